@@ -0,0 +1,67 @@
+import java.lang.management.ManagementFactory;
+
+import ch.elste.battleships.Game;
+import ch.elste.battleships.GamePool;
+
+/**
+ * Measures the bytes allocated per cpu game when every game is created anew and
+ * when the game of {@link GamePool} is reset in place. The set-up between two
+ * games, i.e. creating or resetting the game and placing the boats, is measured
+ * separately from whole games. Build the classes first with mvn compile, then
+ * run
+ *
+ * <pre>
+ * java -cp target/classes bench/AllocationBench.java [games]
+ * </pre>
+ *
+ * @author Dillon Elste
+ *
+ */
+public class AllocationBench {
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory
+			.getThreadMXBean();
+
+	public static void main(String[] args) {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+
+		// warm up both paths, so class loading and compilation aren't counted
+		run(games / 4, false);
+		run(games / 4, true);
+
+		System.out.printf("%-8s %16s %16s %12s%n", "", "set-up bytes/game", "total bytes/game", "games/s");
+		report("new", games, false);
+		report("reset", games, true);
+	}
+
+	private static void report(String name, int games, boolean pooled) {
+		long[] res = run(games, pooled);
+		System.out.printf("%-8s %16d %16d %12.0f%n", name, res[0] / games, res[1] / games, games / (res[2] / 1e9));
+	}
+
+	/**
+	 * Plays the games on this thread.
+	 *
+	 * @return the bytes allocated by the set-up, by the whole games and the
+	 *         nanoseconds taken
+	 */
+	private static long[] run(int games, boolean pooled) {
+		long tid = Thread.currentThread().getId();
+		long setup = 0;
+		long start = System.nanoTime();
+		long before = THREADS.getThreadAllocatedBytes(tid);
+		for (int i = 0; i < games; i++) {
+			long a = THREADS.getThreadAllocatedBytes(tid);
+			Game g;
+			if (pooled) {
+				g = GamePool.cpuVsCpu(false, i);
+			} else {
+				g = Game.cpuVsCpu(false, i);
+				g.init();
+			}
+			setup += THREADS.getThreadAllocatedBytes(tid) - a;
+			g.run();
+		}
+		long total = THREADS.getThreadAllocatedBytes(tid) - before;
+		return new long[] { setup, total, System.nanoTime() - start };
+	}
+}
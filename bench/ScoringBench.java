@@ -0,0 +1,77 @@
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+import ch.elste.battleships.BitBoard;
+import ch.elste.battleships.PlacementScorer;
+
+/**
+ * Compares the bit-sliced placement scoring with the scalar version on boards
+ * from 10x10 to 100x100, about a third of their blocks blocked. That both
+ * return the same scores is checked by PlacementScorerTest. Build the classes
+ * first with mvn compile, then run
+ *
+ * <pre>
+ * java -cp target/classes bench/ScoringBench.java [millis per measurement]
+ * </pre>
+ *
+ * @author Dillon Elste
+ *
+ */
+public class ScoringBench {
+	private static final int[] SIZES = { 10, 20, 50, 100 };
+	private static final int BOARDS = 64;
+
+	private static volatile int sink;
+
+	public static void main(String[] args) {
+		long millis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+		int[] fleet = PlacementScorer.fleet();
+
+		System.out.printf("%-8s %14s %14s %8s%n", "size", "scalar ns/op", "packed ns/op", "speedup");
+		for (int n : SIZES) {
+			long[][] boards = boards(n, new Random(n));
+			double scalar = measure(millis, () -> {
+				int s = 0;
+				for (long[] b : boards)
+					s += PlacementScorer.scoreScalar(b, n, fleet)[0];
+				return s;
+			});
+			double packed = measure(millis, () -> {
+				int s = 0;
+				for (long[] b : boards)
+					s += PlacementScorer.score(b, n, fleet)[0];
+				return s;
+			});
+			System.out.printf("%-8s %14.0f %14.0f %7.1fx%n", n + "x" + n, scalar, packed, scalar / packed);
+		}
+	}
+
+	private static long[][] boards(int n, Random rng) {
+		long[][] res = new long[BOARDS][];
+		for (int i = 0; i < BOARDS; i++) {
+			res[i] = BitBoard.empty(n);
+			for (int c = 0; c < n * n; c++) {
+				if (rng.nextInt(3) == 0)
+					BitBoard.set(res[i], c);
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Runs op for the given time after a warm-up of the same length.
+	 *
+	 * @return the mean time per scored board in nanoseconds
+	 */
+	private static double measure(long millis, IntSupplier op) {
+		for (long end = System.nanoTime() + millis * 1_000_000; System.nanoTime() < end;)
+			sink += op.getAsInt();
+
+		long runs = 0, start = System.nanoTime(), end = start + millis * 1_000_000, now;
+		do {
+			sink += op.getAsInt();
+			runs++;
+		} while ((now = System.nanoTime()) < end);
+		return (double) (now - start) / (runs * BOARDS);
+	}
+}
@@ -0,0 +1,41 @@
+#!/bin/sh
+# Compares the startup of a short cpu game launched from the plain class path
+# with the jlink image and its CDS archive. Build the image first with
+#   mvn -Pimage clean package
+#
+# Usage: bench/startup.sh [runs]
+
+RUNS=${1:-20}
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+ARGS="--cpu --seed 4 --timing"
+JAVA=${JAVA_HOME:+$JAVA_HOME/bin/}java
+
+if [ ! -x "$ROOT/target/image/bin/java" ]; then
+	echo "No runtime image found, run: mvn -Pimage clean package" >&2
+	exit 1
+fi
+
+# runs a command RUNS times and prints the mean time-to-first-move and wall time
+measure() {
+	name=$1
+	java=$2
+	shift 2
+	first=0
+	wall=0
+	i=0
+	while [ $i -lt "$RUNS" ]; do
+		start=$(date +%s%N)
+		ms=$("$java" -Dbattleships.launched=$((start / 1000000)) "$@" $ARGS 2>&1 >/dev/null |
+			sed -n 's/^time-to-first-move-ms //p')
+		end=$(date +%s%N)
+		first=$((first + ms))
+		wall=$((wall + (end - start) / 1000000))
+		i=$((i + 1))
+	done
+	printf '%-28s first move %5d ms   wall %5d ms\n' "$name" $((first / RUNS)) $((wall / RUNS))
+}
+
+measure "class path" "$JAVA" -cp "$ROOT/target/classes" ch.elste.battleships.GameStarter
+measure "image, CDS off" "$ROOT/target/image/bin/java" -Xshare:off -m Battleships/ch.elste.battleships.GameStarter
+# the image maps its archive in lib/server/classes.jsa by default
+measure "image, CDS archive" "$ROOT/target/image/bin/java" -m Battleships/ch.elste.battleships.GameStarter
@@ -0,0 +1,130 @@
+package ch.elste.battleships;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import ch.elste.battleships.Block.BlockType;
+
+/**
+ * Plays a game between {@link AsyncPlayer}s without blocking a thread while a
+ * player thinks. Every step of the game runs as a short task on the given
+ * executor once the player's move is available, so many games can share a
+ * small pool of threads.
+ *
+ * <p>
+ * The players place their boats one after the other and then shoot in turn
+ * order like in {@link Game}. Only one step of a game runs at a time, so the
+ * listeners receive the events in order and never from two threads at once.
+ *
+ * @author Dillon Elste
+ *
+ */
+public class AsyncGame {
+	private AsyncPlayer[] players;
+	private Executor executor;
+	private GameEvents events;
+	private GameState gs;
+	private TurnScheduler scheduler;
+
+	/**
+	 * Each player's number has to be its index.
+	 *
+	 * @param executor runs the steps of the game
+	 * @param players  at least two players
+	 */
+	public AsyncGame(Executor executor, AsyncPlayer... players) {
+		this.players = players;
+		this.executor = executor;
+		this.events = new GameEvents();
+		this.scheduler = TurnScheduler.UNLIMITED;
+	}
+
+	public void addListener(GameListener l) {
+		events.add(l);
+	}
+
+	public void removeListener(GameListener l) {
+		events.remove(l);
+	}
+
+	/**
+	 * Sets the deadlines of the moves. A player who misses the deadline isn't
+	 * waited for, so a slow player doesn't hold up the game.
+	 *
+	 * @param scheduler polls the players for their shots
+	 */
+	public void setTurnScheduler(TurnScheduler scheduler) {
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * Starts the game.
+	 *
+	 * @param gridsize the number of blocks per side of the grids.
+	 * @return a future that is completed with the number of the winner
+	 */
+	public CompletableFuture<Integer> play(int gridsize) {
+		Grid[] grids = new Grid[players.length];
+		CompletableFuture<Void> placed = CompletableFuture.completedFuture(null);
+		for (int i = 0; i < players.length; i++) {
+			Grid g = grids[i] = new Grid(gridsize);
+			int p = i;
+			placed = placed.thenCompose(v -> addBoats(g, p));
+		}
+
+		CompletableFuture<Integer> result = new CompletableFuture<>();
+		placed.thenRunAsync(() -> {
+			gs = new GameState(grids);
+			gs.addListener(events);
+			events.gameStarted(gs);
+			nextTurn(0, result);
+		}, executor).exceptionally(t -> {
+			result.completeExceptionally(t);
+			return null;
+		});
+		return result;
+	}
+
+	/**
+	 * Asks the player for all his boats, one after the other.
+	 *
+	 * @param g the grid belonging to the player
+	 * @param p the number of the player
+	 * @return a future that completes once all boats are placed
+	 */
+	private CompletableFuture<Void> addBoats(Grid g, int p) {
+		CompletableFuture<Void> f = CompletableFuture.completedFuture(null);
+		for (int i = 0; i < 4; i++) {
+			BlockType t = BlockType.getTypeFromIndex(i);
+			for (int n = 0; n < t.amount; n++) {
+				f = f.thenComposeAsync(v -> addBoat(g, p, t), executor);
+			}
+		}
+		return f;
+	}
+
+	private CompletableFuture<Void> addBoat(Grid g, int p, BlockType t) {
+		events.boatRequested(p, g, t);
+		return players[p].getBoat(t).thenComposeAsync(cs -> {
+			if (GameStateFactory.tryAddBoat(g, p, cs, t, events))
+				return CompletableFuture.completedFuture(null);
+			return addBoat(g, p, t); // try again
+		}, executor);
+	}
+
+	private void nextTurn(int p, CompletableFuture<Integer> result) {
+		if (gs.getWinner() != -1) {
+			result.complete(gs.getWinner());
+			return;
+		}
+
+		events.turnStarted(p);
+		scheduler.nextShot(players[p], gs, events, executor).thenAcceptAsync(shot -> {
+			gs.shoot(shot, p);
+			nextTurn(gs.getNextPlayer(p), result);
+		}, executor).exceptionally(t -> {
+			result.completeExceptionally(t);
+			return null;
+		});
+	}
+}
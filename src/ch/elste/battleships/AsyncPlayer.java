@@ -0,0 +1,68 @@
+package ch.elste.battleships;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import ch.elste.battleships.Block.BlockType;
+
+/**
+ * The asynchronous variant of {@link Player}. Instead of blocking until a move
+ * is known, each method returns a future that is completed with the move. A
+ * player waiting for input therefore doesn't occupy a thread.
+ *
+ * @author Dillon Elste
+ *
+ */
+public interface AsyncPlayer {
+
+	/**
+	 * Returns the starting and end coordinate for the given type of boat.
+	 *
+	 * @param type of the boat
+	 * @return A future of an array of coordinates with 2 elements. The first
+	 *         element is the starting position, while the second element is the
+	 *         end position
+	 */
+	public CompletableFuture<Coordinate[]> getBoat(BlockType type);
+
+	/**
+	 * Each player has to define a number, functioning as the index of this player.
+	 *
+	 * @return the player number
+	 */
+	public int getPlayerNumber();
+
+	/**
+	 * Returns the preferred location of the next shot as a {@linkplain Coordinate}.
+	 *
+	 * @return a future of the coordinate of the next shot
+	 */
+	public CompletableFuture<Coordinate> getNextShot();
+
+	/**
+	 * Wraps a synchronous player. Its moves are computed on the given executor,
+	 * i.e. off the game loop.
+	 *
+	 * @param p        the player to wrap
+	 * @param executor runs the calls to p
+	 * @return an asynchronous player making the moves of p
+	 */
+	public static AsyncPlayer of(Player p, Executor executor) {
+		return new AsyncPlayer() {
+			@Override
+			public CompletableFuture<Coordinate[]> getBoat(BlockType type) {
+				return CompletableFuture.supplyAsync(() -> p.getBoat(type), executor);
+			}
+
+			@Override
+			public int getPlayerNumber() {
+				return p.getPlayerNumber();
+			}
+
+			@Override
+			public CompletableFuture<Coordinate> getNextShot() {
+				return CompletableFuture.supplyAsync(p::getNextShot, executor);
+			}
+		};
+	}
+}
@@ -0,0 +1,199 @@
+package ch.elste.battleships;
+
+/**
+ * Helpers for boards packed into {@code long} words with one bit per block. The
+ * block at {@code (x, y)} of a grid with side length {@code gridsize} is stored
+ * at bit {@link #index(int, int, int)}.
+ *
+ * @author Dillon Elste
+ *
+ */
+public final class BitBoard {
+
+	private BitBoard() {
+	}
+
+	/**
+	 * Returns the number of words needed to store one bit per block of a grid of
+	 * size {@code gridsize*gridsize}.
+	 *
+	 * @param gridsize the side-length of the grid
+	 * @return the number of words of a mask
+	 */
+	public static int words(int gridsize) {
+		return (gridsize * gridsize + 63) >>> 6;
+	}
+
+	/**
+	 * Returns the bit index of the block at {@code (x, y)}.
+	 *
+	 * @param gridsize the side-length of the grid
+	 * @param x        the x coordinate of the block
+	 * @param y        the y coordinate of the block
+	 * @return the bit index of the block
+	 */
+	public static int index(int gridsize, int x, int y) {
+		return x * gridsize + y;
+	}
+
+	/**
+	 * Returns a mask without any set bits.
+	 *
+	 * @param gridsize the side-length of the grid
+	 * @return a new, empty mask
+	 */
+	public static long[] empty(int gridsize) {
+		return new long[words(gridsize)];
+	}
+
+	/**
+	 * Returns a mask with the bits of all blocks of the grid set.
+	 *
+	 * @param gridsize the side-length of the grid
+	 * @return a new mask covering the whole grid
+	 */
+	public static long[] full(int gridsize) {
+		int cells = gridsize * gridsize;
+		long[] m = empty(gridsize);
+		for (int w = 0; w < m.length; w++) {
+			m[w] = -1L;
+		}
+		if ((cells & 63) != 0) {
+			m[m.length - 1] = (1L << (cells & 63)) - 1; // clear the bits past the last block
+		}
+		return m;
+	}
+
+	/**
+	 * Returns a mask with the bits of all given cells set. Duplicates are ignored.
+	 *
+	 * @param gridsize the side-length of the grid
+	 * @param cells    the bit indices to set
+	 * @return a new mask
+	 * @throws IndexOutOfBoundsException if a cell is outside the grid
+	 */
+	public static long[] of(int gridsize, int[] cells) {
+		long[] m = empty(gridsize);
+		for (int cell : cells) {
+			if (cell < 0 || cell >= gridsize * gridsize)
+				throw new IndexOutOfBoundsException("Cell outside the grid: " + cell);
+			set(m, cell);
+		}
+		return m;
+	}
+
+	/**
+	 * Sets the bits of all blocks in the rectangle from {@code (x0, y0)} to
+	 * {@code (x1, y1)}, both inclusive. Parts of the rectangle outside the grid are
+	 * ignored.
+	 *
+	 * @param m        the mask to modify
+	 * @param gridsize the side-length of the grid
+	 * @param x0       the smallest x coordinate
+	 * @param y0       the smallest y coordinate
+	 * @param x1       the largest x coordinate
+	 * @param y1       the largest y coordinate
+	 */
+	public static void setRect(long[] m, int gridsize, int x0, int y0, int x1, int y1) {
+		x0 = Math.max(x0, 0);
+		y0 = Math.max(y0, 0);
+		x1 = Math.min(x1, gridsize - 1);
+		y1 = Math.min(y1, gridsize - 1);
+		for (int x = x0; x <= x1; x++) {
+			for (int y = y0; y <= y1; y++) {
+				set(m, index(gridsize, x, y));
+			}
+		}
+	}
+
+	/**
+	 * Returns true if mask m has a set bit in the rectangle from {@code (x0, y0)}
+	 * to {@code (x1, y1)}, both inclusive. Parts of the rectangle outside the grid
+	 * are ignored.
+	 *
+	 * @param m        the mask to check
+	 * @param gridsize the side-length of the grid
+	 * @param x0       the smallest x coordinate
+	 * @param y0       the smallest y coordinate
+	 * @param x1       the largest x coordinate
+	 * @param y1       the largest y coordinate
+	 * @return true if a block of the rectangle is set
+	 */
+	public static boolean intersectsRect(long[] m, int gridsize, int x0, int y0, int x1, int y1) {
+		x0 = Math.max(x0, 0);
+		y0 = Math.max(y0, 0);
+		x1 = Math.min(x1, gridsize - 1);
+		y1 = Math.min(y1, gridsize - 1);
+		for (int x = x0; x <= x1; x++) {
+			for (int y = y0; y <= y1; y++) {
+				if (get(m, index(gridsize, x, y)))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns true if masks a and b have a set bit in common.
+	 *
+	 * @param a the first mask
+	 * @param b the second mask
+	 * @return true if the masks intersect
+	 */
+	public static boolean intersects(long[] a, long[] b) {
+		for (int w = 0; w < a.length; w++) {
+			if ((a[w] & b[w]) != 0)
+				return true;
+		}
+		return false;
+	}
+
+	public static boolean get(long[] m, int i) {
+		return (m[i >>> 6] & (1L << i)) != 0;
+	}
+
+	public static void set(long[] m, int i) {
+		m[i >>> 6] |= 1L << i;
+	}
+
+	public static void clear(long[] m, int i) {
+		m[i >>> 6] &= ~(1L << i);
+	}
+
+	/**
+	 * Returns the index of the k-th set bit of mask m, counting from 0.
+	 *
+	 * @param m the mask
+	 * @param k the rank of the bit, less than {@link #count(long[])}
+	 * @return the bit index
+	 * @throws IllegalArgumentException if m has k or fewer set bits
+	 */
+	public static int select(long[] m, int k) {
+		for (int w = 0; w < m.length; w++) {
+			int c = Long.bitCount(m[w]);
+			if (k < c) {
+				long word = m[w];
+				for (; k > 0; k--) {
+					word &= word - 1; // drop the lowest set bit
+				}
+				return (w << 6) + Long.numberOfTrailingZeros(word);
+			}
+			k -= c;
+		}
+		throw new IllegalArgumentException("Mask has too few set bits");
+	}
+
+	/**
+	 * Returns the number of set bits in mask m.
+	 *
+	 * @param m the mask
+	 * @return the number of set bits
+	 */
+	public static int count(long[] m) {
+		int n = 0;
+		for (long w : m) {
+			n += Long.bitCount(w);
+		}
+		return n;
+	}
+}
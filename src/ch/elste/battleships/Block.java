@@ -1,47 +1,15 @@
 package ch.elste.battleships;
 
-public class Block {
-	private BlockType type;
-	private char symbol;
-	private boolean shot;
-
-	public Block() {
-		this.type = BlockType.WATER;
-		this.symbol = ' ';
-		this.shot = false;
-	}
-
-	public BlockType getType() {
-		return type;
-	}
-
-	public void setType(BlockType type) {
-		this.type = type;
-	}
-
-	public char getSymbol() {
-		return symbol;
-	}
-
-	public void setSymbol(char symbol) {
-		this.symbol = symbol;
-	}
-
-	public boolean isShot() {
-		return shot;
-	}
-
-	public void shoot() {
-		this.shot = true;
-	}
-
-	public boolean isType(BlockType type) {
-		return this.type == type;
-	}
-
-	@Override
-	public String toString() {
-		return String.format("%s Block of type %s", shot ? "Shot" : "Not shot", type);
+/**
+ * Holds the {@link BlockType}s. The blocks of a grid are stored in the arrays
+ * and masks of {@link Grid}, not as objects.
+ *
+ * @author Dillon Elste
+ *
+ */
+public final class Block {
+
+	private Block() {
 	}
 
 	public static enum BlockType {
@@ -0,0 +1,50 @@
+package ch.elste.battleships;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * A pool of direct byte buffers of equal size, so reading from many channels
+ * doesn't allocate a buffer per read. The pool is not thread-safe, it is meant
+ * to be owned by one selector thread.
+ *
+ * @author Dillon Elste
+ *
+ */
+public class BufferPool {
+	private ArrayDeque<ByteBuffer> free;
+	private int bufferSize;
+	private int maxPooled;
+
+	/**
+	 * @param bufferSize the capacity of each buffer
+	 * @param maxPooled  the maximum number of idle buffers kept in the pool
+	 */
+	public BufferPool(int bufferSize, int maxPooled) {
+		this.free = new ArrayDeque<>();
+		this.bufferSize = bufferSize;
+		this.maxPooled = maxPooled;
+	}
+
+	/**
+	 * Returns a cleared buffer, either from the pool or newly allocated.
+	 *
+	 * @return a buffer ready to be read into
+	 */
+	public ByteBuffer acquire() {
+		ByteBuffer b = free.poll();
+		return b != null ? b : ByteBuffer.allocateDirect(bufferSize);
+	}
+
+	/**
+	 * Returns a buffer to the pool. The buffer must not be used afterwards.
+	 *
+	 * @param b the buffer to return
+	 */
+	public void release(ByteBuffer b) {
+		if (free.size() < maxPooled) {
+			b.clear();
+			free.push(b);
+		}
+	}
+}
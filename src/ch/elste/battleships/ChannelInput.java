@@ -0,0 +1,67 @@
+package ch.elste.battleships;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import ch.elste.battleships.LineReader.LineHandler;
+
+/**
+ * An {@link Input} reading from a blocking channel, e.g. a socket. Lines are
+ * assembled by a {@link LineReader} and coordinates are parsed directly from
+ * their bytes with {@link CoordinateParser}. For many connections without a
+ * thread each, see {@link InputSelector} and {@link RemotePlayer}.
+ *
+ * @author Dillon Elste
+ *
+ */
+public class ChannelInput extends Input implements LineHandler {
+	private LineReader reader;
+	private ArrayDeque<byte[]> lines;
+	private boolean closed;
+
+	/**
+	 * @param channel a channel in blocking mode
+	 */
+	public ChannelInput(ReadableByteChannel channel) {
+		this.reader = new LineReader(channel, new BufferPool(1 << 10, 1), this);
+		this.lines = new ArrayDeque<>();
+		this.closed = false;
+	}
+
+	@Override
+	public void line(byte[] line, int len) {
+		lines.add(Arrays.copyOf(line, len));
+	}
+
+	@Override
+	public void closed() {
+		closed = true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @throws NoSuchElementException if the channel has no more lines
+	 * @throws UncheckedIOException   if reading from the channel fails
+	 */
+	@Override
+	protected Coordinate[] readCoordinates(int n) {
+		while (lines.isEmpty()) {
+			if (closed)
+				throw new NoSuchElementException("No line found");
+			try {
+				reader.read();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		byte[] line = lines.poll();
+		Coordinate[] res = new Coordinate[n];
+		return CoordinateParser.parse(line, line.length, res) == n ? res : null;
+	}
+}
@@ -0,0 +1,94 @@
+package ch.elste.battleships;
+
+import ch.elste.battleships.Block.BlockType;
+
+/**
+ * Shows a game to a human player on the console using {@link Output}.
+ *
+ * @author Dillon Elste
+ *
+ */
+public class ConsoleView implements GameListener {
+	private int human;
+	private GameState gs;
+
+	/**
+	 * @param human the number of the player sitting in front of the console
+	 */
+	public ConsoleView(int human) {
+		this.human = human;
+	}
+
+	@Override
+	public void boatRequested(int playerNumber, Grid grid, BlockType type) {
+		if (playerNumber == human) {
+			// print current state
+			Output.clearScreen();
+			Output.printGrid(grid, "Current Grid");
+		}
+	}
+
+	@Override
+	public void boatRejected(int playerNumber, BlockType type, Rejection reason) {
+		if (playerNumber != human)
+			return;
+
+		if (reason == Rejection.BOAT_COLLISION)
+			Output.println("There is already another boat obstructing this square. Try again:");
+		else if (reason == Rejection.OUTSIDE_GRID)
+			Output.println("Please enter coordinates inside the grid!");
+		else
+			Output.println("Incorrect size or orientation. Please try again:");
+	}
+
+	@Override
+	public void gameStarted(GameState gs) {
+		this.gs = gs;
+		Output.clearScreen();
+		gs.showGrid(gs.getNextPlayer(human), "TARGET GRID");
+	}
+
+	@Override
+	public void turnStarted(int playerNumber) {
+		if (playerNumber != human)
+			Output.clearScreen();
+
+		String title = playerNumber == human ? "OCEAN " : "TARGET ";
+		title += "GRID";
+		gs.showGrid(playerNumber, title);
+	}
+
+	@Override
+	public void shotRejected(int playerNumber, Coordinate c, Rejection reason) {
+		if (playerNumber != human)
+			return;
+
+		switch (reason) {
+		case OUTSIDE_GRID:
+			Output.println("Please enter coordinates inside the grid!");
+			break;
+		case ALREADY_IN_SALVO:
+			Output.println("This position is already part of your salvo.");
+			break;
+		default:
+			Output.println("This position was already shot.");
+		}
+	}
+
+	@Override
+	public void shotReplaced(int playerNumber, Coordinate c) {
+		if (playerNumber == human)
+			Output.println("Time is up, a shot was fired for you.");
+	}
+
+	@Override
+	public void gameOver(int winner) {
+		Output.clearScreen();
+		if (winner == human) {
+			Output.println("Congratulations, you won!");
+		} else {
+			Output.println("Better luck next time.");
+			gs.showEndGrid(winner, "REMAINING GRID");
+		}
+	}
+}
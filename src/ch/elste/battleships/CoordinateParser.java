@@ -0,0 +1,51 @@
+package ch.elste.battleships;
+
+/**
+ * Parses coordinates like {@code A1} directly from the bytes of a line, without
+ * creating Strings. Matches the same coordinates as the regular expression
+ * {@code [a-zA-Z][0-9]+} used by {@link Input}.
+ *
+ * @author Dillon Elste
+ *
+ */
+public final class CoordinateParser {
+
+	private CoordinateParser() {
+	}
+
+	/**
+	 * Finds the first {@code out.length} coordinates in the first {@code len}
+	 * bytes of line and stores them in out.
+	 *
+	 * @param line the line to parse, encoded in ASCII or UTF-8
+	 * @param len  the number of valid bytes in line
+	 * @param out  receives the coordinates
+	 * @return the number of coordinates found, at most {@code out.length}
+	 */
+	public static int parse(byte[] line, int len, Coordinate[] out) {
+		int found = 0;
+		int i = 0;
+		while (found < out.length && i + 1 < len) {
+			if (!isLetter(line[i]) || !isDigit(line[i + 1])) {
+				i++;
+				continue;
+			}
+
+			char x = (char) line[i];
+			int y = 0;
+			for (i++; i < len && isDigit(line[i]); i++) {
+				y = y < Integer.MAX_VALUE / 10 ? y * 10 + line[i] - '0' : Integer.MAX_VALUE; // saturate
+			}
+			out[found++] = new Coordinate(x, y);
+		}
+		return found;
+	}
+
+	private static boolean isLetter(byte b) {
+		return b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z';
+	}
+
+	private static boolean isDigit(byte b) {
+		return b >= '0' && b <= '9';
+	}
+}
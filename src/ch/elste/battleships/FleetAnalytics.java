@@ -0,0 +1,299 @@
+package ch.elste.battleships;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import ch.elste.battleships.Block.BlockType;
+
+/**
+ * Collects how a player places his boats and how long it takes to sink them
+ * over many games. For each boat type it counts how often each block was
+ * occupied, and how many shots at the player's grid it took until a boat of
+ * that type was sunk.
+ *
+ * <p>
+ * An instance is registered as listener of every game to analyse, or is fed
+ * recorded games with {@link #addGame(GameState)} and
+ * {@link #addSnapshots(Path)}. Recorded games don't tell in which order the
+ * blocks were shot, so they only add to the heatmap. It is not
+ * thread-safe, parallel workers each use their own instance and combine them
+ * with {@link #merge(FleetAnalytics)}. The aggregated heatmap can be turned
+ * into an {@link OpeningBook} with {@link #toOpeningBook(int)}, which a cpu
+ * player loads at startup.
+ *
+ * @author Dillon Elste
+ *
+ */
+public class FleetAnalytics implements GameListener {
+	public static final int MAGIC = 0x4253464c; // "BSFL"
+	public static final short VERSION = 1;
+
+	private static final int TYPES = 4;
+
+	private int gridsize;
+	private int player;
+	private int games;
+	private int shots;
+
+	/**
+	 * The number of games in which a boat of each type occupied each block.
+	 */
+	private int[][] occupancy;
+
+	/**
+	 * The number of boats of each type sunk after a given number of shots.
+	 */
+	private int[][] timeToSink;
+
+	/**
+	 * @param gridsize the side-length of the analysed grids
+	 * @param player   the number of the player whose fleets are analysed
+	 */
+	public FleetAnalytics(int gridsize, int player) {
+		this.gridsize = gridsize;
+		this.player = player;
+		this.occupancy = new int[TYPES][gridsize * gridsize];
+		this.timeToSink = new int[TYPES][gridsize * gridsize + 1];
+	}
+
+	// the boat types have the indices of BlockType.getTypeFromIndex, i.e. without
+	// water
+	private static int typeIndex(BlockType type) {
+		return type.ordinal() - 1;
+	}
+
+	@Override
+	public void boatPlaced(int playerNumber, Coordinate from, Coordinate to, BlockType type) {
+		if (playerNumber != player)
+			return;
+
+		int[] counts = occupancy[typeIndex(type)];
+		for (int x = Math.min(from.getX(), to.getX()); x <= Math.max(from.getX(), to.getX()); x++) {
+			for (int y = Math.min(from.getY(), to.getY()); y <= Math.max(from.getY(), to.getY()); y++) {
+				counts[BitBoard.index(gridsize, x, y)]++;
+			}
+		}
+	}
+
+	@Override
+	public void gameStarted(GameState gs) {
+		games++;
+		shots = 0;
+	}
+
+	@Override
+	public void shotFired(int playerNumber, int target, Coordinate c) {
+		if (target == player)
+			shots++;
+	}
+
+	@Override
+	public void sunk(int playerNumber, int target, Coordinate[] boat, BlockType type) {
+		if (target == player)
+			timeToSink[typeIndex(type)][shots]++;
+	}
+
+	/**
+	 * Adds the fleet of a recorded game to the heatmap, e.g. of a game restored
+	 * from a {@link Snapshot}. The boats are known from the start of a game, so
+	 * the game may have been recorded at any turn. The time to sink isn't known
+	 * and left unchanged.
+	 *
+	 * @param gs the recorded game
+	 * @throws IllegalArgumentException if the grids of gs have another size
+	 */
+	public void addGame(GameState gs) {
+		Grid g = gs.getGrid(player);
+		if (g.getGridsize() != gridsize)
+			throw new IllegalArgumentException("Different grid sizes: " + gridsize + " and " + g.getGridsize());
+
+		games++;
+		for (int x = 0; x < gridsize; x++) {
+			for (int y = 0; y < gridsize; y++) {
+				BlockType type = g.getTypeAt(new Coordinate(x, y));
+				if (type != BlockType.WATER)
+					occupancy[typeIndex(type)][BitBoard.index(gridsize, x, y)]++;
+			}
+		}
+	}
+
+	/**
+	 * Adds the fleets of all games of a snapshot file, see
+	 * {@link #addGame(GameState)}.
+	 *
+	 * @param path the snapshot file written by {@link SnapshotWriter}
+	 * @return the number of games read
+	 * @throws IOException if the file can't be read or is not a snapshot file
+	 */
+	public int addSnapshots(Path path) throws IOException {
+		List<Snapshot> snapshots = Snapshot.readAll(path);
+		for (Snapshot s : snapshots) {
+			addGame(s.getGameState());
+		}
+		return snapshots.size();
+	}
+
+	/**
+	 * Adds the counts of other to this instance.
+	 *
+	 * @param other the analytics of another worker for the same grid size
+	 */
+	public void merge(FleetAnalytics other) {
+		if (other.gridsize != gridsize)
+			throw new IllegalArgumentException("Different grid sizes: " + gridsize + " and " + other.gridsize);
+
+		games += other.games;
+		for (int t = 0; t < TYPES; t++) {
+			for (int i = 0; i < occupancy[t].length; i++) {
+				occupancy[t][i] += other.occupancy[t][i];
+			}
+			for (int i = 0; i < timeToSink[t].length; i++) {
+				timeToSink[t][i] += other.timeToSink[t][i];
+			}
+		}
+	}
+
+	public int getGames() {
+		return games;
+	}
+
+	/**
+	 * Returns in how many games a boat of the given type occupied the block c.
+	 *
+	 * @param type the boat type
+	 * @param c    the coordinate of the block
+	 * @return the number of games
+	 */
+	public int getOccupancy(BlockType type, Coordinate c) {
+		return occupancy[typeIndex(type)][BitBoard.index(gridsize, c.getX(), c.getY())];
+	}
+
+	/**
+	 * Returns how many boats of the given type were sunk by exactly the given
+	 * shot at the player's grid.
+	 *
+	 * @param type  the boat type
+	 * @param shots the number of shots at the grid when the boat was sunk
+	 * @return the number of boats
+	 */
+	public int getTimeToSink(BlockType type, int shots) {
+		return timeToSink[typeIndex(type)][shots];
+	}
+
+	/**
+	 * Creates an opening book shooting the blocks most often occupied by any boat
+	 * first.
+	 *
+	 * @param length the number of shots in the book
+	 * @return the book
+	 */
+	public OpeningBook toOpeningBook(int length) {
+		int cells = gridsize * gridsize;
+		long[] keys = new long[cells];
+		for (int i = 0; i < cells; i++) {
+			long total = 0;
+			for (int t = 0; t < TYPES; t++) {
+				total += occupancy[t][i];
+			}
+			keys[i] = (-total << 16) | i; // sorts by descending count, then by block
+		}
+		Arrays.sort(keys);
+
+		int[] order = new int[cells];
+		for (int i = 0; i < cells; i++) {
+			order[i] = (int) (keys[i] & 0xffff);
+		}
+		return OpeningBook.fromOrder(gridsize, order, Math.min(length, cells));
+	}
+
+	/**
+	 * Writes the collected counts to path, so they can be merged with the counts
+	 * of other runs.
+	 *
+	 * @param path the file to write
+	 * @throws IOException if writing fails
+	 */
+	public void write(Path path) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(4 + 2 + 2 + 4 + 4 * TYPES * (2 * gridsize * gridsize + 1));
+		buf.putInt(MAGIC).putShort(VERSION).putShort((short) gridsize).putInt(games);
+		for (int t = 0; t < TYPES; t++) {
+			for (int n : occupancy[t])
+				buf.putInt(n);
+			for (int n : timeToSink[t])
+				buf.putInt(n);
+		}
+		buf.flip();
+
+		try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buf.hasRemaining()) {
+				ch.write(buf);
+			}
+		}
+	}
+
+	/**
+	 * Reads counts written by {@link #write(Path)}.
+	 *
+	 * @param path   the file to read
+	 * @param player the player the counts are attributed to
+	 * @return the restored analytics
+	 * @throws IOException if the file can't be read or has the wrong format
+	 */
+	public static FleetAnalytics read(Path path, int player) throws IOException {
+		try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+			MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+			if (buf.remaining() < 12 || buf.getInt() != MAGIC)
+				throw new IOException("Not a fleet analytics file: " + path);
+			short version = buf.getShort();
+			if (version != VERSION)
+				throw new IOException("Unsupported fleet analytics version " + version + " in " + path);
+
+			int gridsize = buf.getShort();
+			if (gridsize < 1 || buf.remaining() != 4 + 4 * TYPES * (2 * gridsize * gridsize + 1))
+				throw new IOException("Fleet analytics file " + path + " has the wrong size for grid size " + gridsize);
+
+			FleetAnalytics a = new FleetAnalytics(gridsize, player);
+			a.games = buf.getInt();
+			for (int t = 0; t < TYPES; t++) {
+				buf.asIntBuffer().get(a.occupancy[t]);
+				buf.position(buf.position() + 4 * a.occupancy[t].length);
+				buf.asIntBuffer().get(a.timeToSink[t]);
+				buf.position(buf.position() + 4 * a.timeToSink[t].length);
+			}
+			return a;
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated fleet analytics file: " + path, e);
+		}
+	}
+
+	/**
+	 * Builds the heatmap of a player from recorded games and writes it as an
+	 * opening book, which the cpu player loads with {@code --book}.
+	 *
+	 * @param args the book to write, the number of the analysed player and one or
+	 *             more snapshot files
+	 * @throws IOException if reading or writing fails
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.err.println("Usage: FleetAnalytics <book> <player> <snapshots>...");
+			return;
+		}
+
+		FleetAnalytics a = new FleetAnalytics(Game.GRID_SIZE, Integer.parseInt(args[1]));
+		for (int i = 2; i < args.length; i++) {
+			a.addSnapshots(Paths.get(args[i]));
+		}
+		a.toOpeningBook(12).write(Paths.get(args[0]));
+		System.out.println("Analysed " + a.getGames() + " games");
+	}
+}
@@ -0,0 +1,169 @@
+package ch.elste.battleships;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import ch.elste.battleships.Block.BlockType;
+
+/**
+ * Validates complete fleets, e.g. imported layouts for tournaments. Unlike
+ * {@link Grid#addBoat(Coordinate, Coordinate, BlockType, int)}, which stops at
+ * the first problem, every violation of a fleet is reported.
+ *
+ * <p>
+ * A fleet is given as an array of boats, each boat as its start and end
+ * coordinate. The type of a boat follows from its length. A fleet is valid if it
+ * contains the right number of boats of each type, every boat is straight and
+ * inside the grid, and no boat overlaps or touches another, not even
+ * diagonally.
+ *
+ * @author Dillon Elste
+ *
+ */
+public class FleetValidator {
+
+	/**
+	 * A single problem of a fleet.
+	 */
+	public static class Violation {
+
+		public static enum Kind {
+			DIAGONAL, OUTSIDE_GRID, WRONG_LENGTH, OVERLAP, ADJACENT, WRONG_COUNT
+		}
+
+		private Kind kind;
+		private int boat;
+		private BlockType type;
+
+		Violation(Kind kind, int boat, BlockType type) {
+			this.kind = kind;
+			this.boat = boat;
+			this.type = type;
+		}
+
+		public Kind getKind() {
+			return kind;
+		}
+
+		/**
+		 * Returns the index of the offending boat in the fleet or -1 if the
+		 * violation concerns the whole fleet.
+		 *
+		 * @return the index of the boat
+		 */
+		public int getBoat() {
+			return boat;
+		}
+
+		/**
+		 * Returns the boat type with the wrong count, or null for other kinds.
+		 *
+		 * @return the boat type
+		 */
+		public BlockType getType() {
+			return type;
+		}
+
+		@Override
+		public String toString() {
+			return type != null ? String.format("%s of %s", kind, type.name)
+					: String.format("%s at boat %d", kind, boat);
+		}
+	}
+
+	private int gridsize;
+
+	/**
+	 * @param gridsize the side-length of the grid the fleets are placed on
+	 */
+	public FleetValidator(int gridsize) {
+		this.gridsize = gridsize;
+	}
+
+	/**
+	 * Checks the fleet in one pass over a packed board.
+	 *
+	 * @param fleet the boats, each as an array of its start and end coordinate
+	 * @return all violations of the fleet, empty if it is valid
+	 */
+	public List<Violation> validate(Coordinate[][] fleet) {
+		List<Violation> res = null;
+		int[] counts = new int[4];
+		long[] occupied = BitBoard.empty(gridsize);
+		long[] boat = BitBoard.empty(gridsize);
+		long[] halo = BitBoard.empty(gridsize);
+
+		for (int i = 0; i < fleet.length; i++) {
+			Coordinate from = fleet[i][0], to = fleet[i][1];
+			int x0 = Math.min(from.getX(), to.getX()), x1 = Math.max(from.getX(), to.getX());
+			int y0 = Math.min(from.getY(), to.getY()), y1 = Math.max(from.getY(), to.getY());
+
+			Violation.Kind kind = null;
+			if (x0 != x1 && y0 != y1)
+				kind = Violation.Kind.DIAGONAL;
+			else if (x0 < 0 || y0 < 0 || x1 >= gridsize || y1 >= gridsize)
+				kind = Violation.Kind.OUTSIDE_GRID;
+			else if (typeIndex(x1 - x0 + y1 - y0 + 1) < 0)
+				kind = Violation.Kind.WRONG_LENGTH;
+
+			if (kind != null) {
+				res = add(res, new Violation(kind, i, null));
+				continue; // the boat can't be placed, so it can't collide either
+			}
+			counts[typeIndex(x1 - x0 + y1 - y0 + 1)]++;
+
+			Arrays.fill(boat, 0);
+			Arrays.fill(halo, 0);
+			BitBoard.setRect(boat, gridsize, x0, y0, x1, y1);
+			BitBoard.setRect(halo, gridsize, x0 - 1, y0 - 1, x1 + 1, y1 + 1); // boat and its 8-neighbourhood
+
+			if (BitBoard.intersects(boat, occupied))
+				res = add(res, new Violation(Violation.Kind.OVERLAP, i, null));
+			else if (BitBoard.intersects(halo, occupied))
+				res = add(res, new Violation(Violation.Kind.ADJACENT, i, null));
+
+			for (int w = 0; w < occupied.length; w++) {
+				occupied[w] |= boat[w];
+			}
+		}
+
+		for (int t = 0; t < counts.length; t++) {
+			BlockType type = BlockType.getTypeFromIndex(t);
+			if (counts[t] != type.amount)
+				res = add(res, new Violation(Violation.Kind.WRONG_COUNT, -1, type));
+		}
+
+		return res == null ? Collections.emptyList() : res;
+	}
+
+	/**
+	 * Validates many fleets in parallel.
+	 *
+	 * @param fleets the fleets to check
+	 * @return the violations of each fleet, in the order of fleets
+	 */
+	public List<List<Violation>> validateAll(List<Coordinate[][]> fleets) {
+		return IntStream.range(0, fleets.size()).parallel().mapToObj(i -> validate(fleets.get(i)))
+				.collect(Collectors.toList());
+	}
+
+	// returns the index of the boat type with the given length or -1
+	private static int typeIndex(int length) {
+		for (int t = 0; t < 4; t++) {
+			if (BlockType.getTypeFromIndex(t).length == length)
+				return t;
+		}
+		return -1;
+	}
+
+	private static List<Violation> add(List<Violation> list, Violation v) {
+		if (list == null)
+			list = new ArrayList<>();
+		list.add(v);
+		return list;
+	}
+}
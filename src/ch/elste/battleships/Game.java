@@ -1,8 +1,7 @@
 package ch.elste.battleships;
 
 import java.io.InputStream;
-
-import ch.elste.battleships.Exceptions.IllegalBoatSpecException;
+import java.util.Random;
 
 /**
  * The Game class ensures that the game plays out in the correct manner. It asks
@@ -11,7 +10,15 @@ import ch.elste.battleships.Exceptions.IllegalBoatSpecException;
  * also supervised here.
  * 
  * Before {@link #run()} can be called, {@link #init()} needs to be called.
- * After run finishes {@link #init()} can be called again.
+ * After run finishes {@link #init()} can be called again, it reuses the grids
+ * of the previous game.
+ * 
+ * <p>
+ * In salvo mode each player fires one shot per boat he has left every turn.
+ * 
+ * <p>
+ * A running game can be saved with {@link #snapshot()} and continued later with
+ * {@link #resume(Snapshot)} instead of {@link #init()}.
  * 
  * @author Dillon Elste
  *
@@ -21,62 +28,193 @@ public class Game implements Runnable {
 
 	private GameStateFactory gsf;
 	private GameState gs;
-	private Player usr, cpu;
+	private Player usr;
+	private PlayerCpu cpu;
+	private Player curr;
 	private boolean initialized;
+	private boolean salvo;
+	private Random rng;
+	private long seed;
+	private GameEvents events;
+	private TurnScheduler scheduler;
 
-	public Game(InputStream is) {
-		Input in = new Input(is);
+	/**
+	 * Creates a game of player usr against a cpu player. Nothing is shown on the
+	 * console.
+	 * 
+	 * @param usr   the first player, with number 0
+	 * @param salvo true to play in salvo mode
+	 * @param seed  the seed of the cpu player
+	 */
+	private Game(Player usr, boolean salvo, long seed) {
+		this.seed = seed;
+		this.rng = new Random(seed);
+		this.usr = usr;
+		this.cpu = new PlayerCpu(1, GRID_SIZE, rng);
 
-		this.usr = new PlayerUser(in, 0);
-		this.cpu = new PlayerCpu(1, GRID_SIZE);
+		this.events = new GameEvents();
 
 		this.gsf = new GameStateFactory(usr, cpu);
+		gsf.addListener(events);
 
+		this.scheduler = TurnScheduler.UNLIMITED;
 		this.initialized = false;
+		this.salvo = salvo;
+	}
+
+	public Game(InputStream is, boolean salvo, long seed) {
+		this(new PlayerUser(new Input(is), 0), salvo, seed);
+		events.add(new ConsoleView(usr.getPlayerNumber()));
+	}
+
+	public Game(InputStream is, boolean salvo) {
+		this(is, salvo, new Random().nextLong());
+	}
+
+	public Game(InputStream is) {
+		this(is, false);
 	}
 
 	public Game() {
 		this(System.in);
 	}
 
+	/**
+	 * Creates a game between two cpu players without any output, e.g. for
+	 * simulations.
+	 * 
+	 * @param salvo true to play in salvo mode
+	 * @param seed  the seed of the game
+	 * @return the new game
+	 */
+	public static Game cpuVsCpu(boolean salvo, long seed) {
+		return new Game(new PlayerCpu(0, GRID_SIZE, new Random(~seed)), salvo, seed);
+	}
+
 	public void init() {
 		if (initialized)
 			throw new IllegalStateException("Already initialized, but not run");
 
-		Output.clearScreen();
-		gs = gsf.getGameState(GRID_SIZE);
+		if (gs == null)
+			gs = gsf.getGameState(GRID_SIZE);
+		else
+			gsf.reset(gs); // reuse the grids of the last game
+		setGameState();
+		curr = usr;
 		initialized = true;
-		Output.clearScreen();
 	}
 
 	/**
-	 * Polls the player for shots, until a legal move was made.
+	 * Reseeds the cpu players, so the next game played after {@link #init()} is
+	 * the same as the one of a new game with this seed.
 	 * 
-	 * @param p the player to move
-	 * @return the coordinates of the fired shot.
+	 * @param seed the new seed
 	 */
-	private Coordinate getNextShot(Player p) {
-		Coordinate shot;
-		while (true) {
-			shot = p.getNextShot();
-			try {
-				if (!gs.isValid(shot, p.getPlayerNumber())) {
-					// this square was already shot
-					if (p.getPlayerNumber() == usr.getPlayerNumber())
-						Output.println("This position was already shot.");
-					continue; // try again
-				}
-			} catch (IllegalBoatSpecException e) {
-				// the coordinates are outside the grid
-				if (p.getPlayerNumber() == usr.getPlayerNumber())
-					Output.println("Please enter coordinates inside the grid!");
-				continue; // try again
-			}
+	public void setSeed(long seed) {
+		if (initialized)
+			throw new IllegalStateException("Already initialized, but not run");
+
+		this.seed = seed;
+		rng.setSeed(seed);
+		if (usr instanceof PlayerCpu)
+			((PlayerCpu) usr).setSeed(~seed);
+	}
+
+	/**
+	 * Continues a saved game instead of calling {@link #init()}. The cpu player is
+	 * reseeded with the saved seed.
+	 * 
+	 * @param s the saved game
+	 */
+	public void resume(Snapshot s) {
+		if (initialized)
+			throw new IllegalStateException("Already initialized, but not run");
 
-			break; // found a suitable block
+		gs = s.getGameState().fork(); // the snapshot may be resumed again
+		gs.addListener(events);
+		setGameState();
+		curr = s.getTurn() == usr.getPlayerNumber() ? usr : cpu;
+		seed = s.getSeed();
+		rng.setSeed(seed);
+		initialized = true;
+	}
+
+	/**
+	 * Hands the state of the new game to the cpu players, so they only shoot at
+	 * blocks that weren't shot yet.
+	 */
+	private void setGameState() {
+		cpu.setGameState(gs);
+		if (usr instanceof PlayerCpu)
+			((PlayerCpu) usr).setGameState(gs);
+	}
+
+	/**
+	 * Saves the current state of this game. Must not be called while a move is in
+	 * progress.
+	 * 
+	 * @return a snapshot of this game
+	 */
+	public Snapshot snapshot() {
+		if (!initialized)
+			throw new IllegalStateException("Game wasn't initialized. See init()");
+
+		return new Snapshot(gs.fork(), curr.getPlayerNumber(), seed);
+	}
+
+	/**
+	 * Registers a listener for the events of this game, e.g. for metrics or
+	 * spectators. The console output for the human player is registered by default.
+	 * 
+	 * @param l the listener to add
+	 */
+	public void addListener(GameListener l) {
+		events.add(l);
+	}
+
+	public void removeListener(GameListener l) {
+		events.remove(l);
+	}
+
+	/**
+	 * Sets the deadlines of the moves. By default the players have unlimited time
+	 * and tries to make a legal shot.
+	 * 
+	 * @param scheduler polls the players for their shots
+	 */
+	public void setTurnScheduler(TurnScheduler scheduler) {
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * Lets the cpu player take its first shots from book.
+	 * 
+	 * @param book the opening book, or null to shoot randomly
+	 */
+	public void setOpeningBook(OpeningBook book) {
+		cpu.setOpeningBook(book);
+	}
+
+	/**
+	 * Polls the player for one legal shot per remaining boat and fires them all at
+	 * once.
+	 * 
+	 * @param p the player to move
+	 */
+	private void fireSalvo(Player p) {
+		int n = p.getPlayerNumber();
+		long[] shootable = gs.filterShootable(BitBoard.full(GRID_SIZE), n);
+		int[] cells = new int[Math.min(gs.getRemainingBoats(n), BitBoard.count(shootable))];
+		long[] salvo = BitBoard.empty(GRID_SIZE);
+
+		for (int i = 0; i < cells.length; i++) {
+			Coordinate shot = scheduler.nextShot(p, gs, events, salvo);
+			int cell = BitBoard.index(GRID_SIZE, shot.getX(), shot.getY());
+			BitBoard.set(salvo, cell);
+			cells[i] = cell;
 		}
 
-		return shot;
+		gs.shootAll(cells, n);
 	}
 
 	/**
@@ -86,13 +224,7 @@ public class Game implements Runnable {
 	 * @return the next player
 	 */
 	private Player getNextPlayer(Player current) {
-		return current.getPlayerNumber() == usr.getPlayerNumber() ? cpu : usr;
-	}
-
-	private void showOutput(int currId) {
-		String title = currId == usr.getPlayerNumber() ? "OCEAN " : "TARGET ";
-		title += "GRID";
-		gs.showGrid(currId, title);
+		return gs.getNextPlayer(current.getPlayerNumber()) == usr.getPlayerNumber() ? usr : cpu;
 	}
 
 	@Override
@@ -101,25 +233,17 @@ public class Game implements Runnable {
 			throw new IllegalStateException("Game wasn't initialized. See init()");
 		}
 
-		Player curr = usr;
 		Coordinate shot;
-		showOutput(cpu.getPlayerNumber());
+		events.gameStarted(gs);
 		while (gs.getWinner() == -1) {
-			showOutput(curr.getPlayerNumber());
-			shot = getNextShot(curr);
-			gs.shoot(shot, curr.getPlayerNumber());
-			curr = getNextPlayer(curr);
-			if (curr.getPlayerNumber() == cpu.getPlayerNumber()) {
-				Output.clearScreen();
+			events.turnStarted(curr.getPlayerNumber());
+			if (salvo) {
+				fireSalvo(curr);
+			} else {
+				shot = scheduler.nextShot(curr, gs, events, null);
+				gs.shoot(shot, curr.getPlayerNumber());
 			}
-		}
-
-		Output.clearScreen();
-		if (gs.getWinner() == usr.getPlayerNumber()) {
-			Output.println("Congratulations, you won!");
-		} else {
-			Output.println("Better luck next time.");
-			gs.showEndGrid(cpu.getPlayerNumber(), "REMAINING GRID");
+			curr = getNextPlayer(curr);
 		}
 
 		initialized = false;
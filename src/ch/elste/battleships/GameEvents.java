@@ -0,0 +1,122 @@
+package ch.elste.battleships;
+
+import java.util.Arrays;
+
+import ch.elste.battleships.Block.BlockType;
+
+/**
+ * Publishes every event to all registered listeners. Without listeners
+ * publishing an event costs one loop over an empty array, so headless games
+ * only pay for the listeners they attach.
+ *
+ * @author Dillon Elste
+ *
+ */
+public class GameEvents implements GameListener {
+	private volatile GameListener[] listeners = new GameListener[0];
+
+	public synchronized void add(GameListener l) {
+		GameListener[] ls = Arrays.copyOf(listeners, listeners.length + 1);
+		ls[ls.length - 1] = l;
+		listeners = ls;
+	}
+
+	public synchronized void remove(GameListener l) {
+		GameListener[] ls = listeners;
+		for (int i = 0; i < ls.length; i++) {
+			if (ls[i] == l) {
+				GameListener[] res = Arrays.copyOf(ls, ls.length - 1);
+				System.arraycopy(ls, i + 1, res, i, ls.length - i - 1);
+				listeners = res;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns true if there are no listeners, i.e. events need not be computed.
+	 * Dispatchers that are themselves empty, like the ones the events of a game
+	 * are forwarded through, don't count as listeners.
+	 *
+	 * @return true if no listener is registered
+	 */
+	public boolean isEmpty() {
+		for (GameListener l : listeners) {
+			if (!(l instanceof GameEvents) || !((GameEvents) l).isEmpty())
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public void boatRequested(int playerNumber, Grid grid, BlockType type) {
+		for (GameListener l : listeners)
+			l.boatRequested(playerNumber, grid, type);
+	}
+
+	@Override
+	public void boatPlaced(int playerNumber, Coordinate from, Coordinate to, BlockType type) {
+		for (GameListener l : listeners)
+			l.boatPlaced(playerNumber, from, to, type);
+	}
+
+	@Override
+	public void boatRejected(int playerNumber, BlockType type, Rejection reason) {
+		for (GameListener l : listeners)
+			l.boatRejected(playerNumber, type, reason);
+	}
+
+	@Override
+	public void gameStarted(GameState gs) {
+		for (GameListener l : listeners)
+			l.gameStarted(gs);
+	}
+
+	@Override
+	public void turnStarted(int playerNumber) {
+		for (GameListener l : listeners)
+			l.turnStarted(playerNumber);
+	}
+
+	@Override
+	public void shotRejected(int playerNumber, Coordinate c, Rejection reason) {
+		for (GameListener l : listeners)
+			l.shotRejected(playerNumber, c, reason);
+	}
+
+	@Override
+	public void shotReplaced(int playerNumber, Coordinate c) {
+		for (GameListener l : listeners)
+			l.shotReplaced(playerNumber, c);
+	}
+
+	@Override
+	public void shotFired(int playerNumber, int target, Coordinate c) {
+		for (GameListener l : listeners)
+			l.shotFired(playerNumber, target, c);
+	}
+
+	@Override
+	public void hit(int playerNumber, int target, Coordinate c) {
+		for (GameListener l : listeners)
+			l.hit(playerNumber, target, c);
+	}
+
+	@Override
+	public void sunk(int playerNumber, int target, Coordinate[] boat, BlockType type) {
+		for (GameListener l : listeners)
+			l.sunk(playerNumber, target, boat, type);
+	}
+
+	@Override
+	public void eliminated(int playerNumber) {
+		for (GameListener l : listeners)
+			l.eliminated(playerNumber);
+	}
+
+	@Override
+	public void gameOver(int winner) {
+		for (GameListener l : listeners)
+			l.gameOver(winner);
+	}
+}
@@ -0,0 +1,86 @@
+package ch.elste.battleships;
+
+import ch.elste.battleships.Block.BlockType;
+
+/**
+ * Receives the events of a game. Listeners are registered with
+ * {@link Game#addListener(GameListener)}, {@link GameState#addListener(GameListener)}
+ * or {@link GameStateFactory#addListener(GameListener)} and are called on the
+ * thread that plays the game. All methods do nothing by default, so a listener
+ * only needs to override the events it is interested in.
+ *
+ * @author Dillon Elste
+ *
+ */
+public interface GameListener {
+
+	/**
+	 * The reasons a boat or a shot can be rejected.
+	 */
+	public static enum Rejection {
+		ILLEGAL_BOAT_SPEC, BOAT_COLLISION, OUTSIDE_GRID, ALREADY_SHOT, ALREADY_IN_SALVO
+	}
+
+	/**
+	 * Called before player {@code playerNumber} is asked for a boat.
+	 *
+	 * @param playerNumber the player who places the boat
+	 * @param grid         the grid of the player
+	 * @param type         the type of the requested boat
+	 */
+	public default void boatRequested(int playerNumber, Grid grid, BlockType type) {
+	}
+
+	public default void boatPlaced(int playerNumber, Coordinate from, Coordinate to, BlockType type) {
+	}
+
+	public default void boatRejected(int playerNumber, BlockType type, Rejection reason) {
+	}
+
+	/**
+	 * Called when a game starts or is resumed, before the first turn.
+	 *
+	 * @param gs the state of the game
+	 */
+	public default void gameStarted(GameState gs) {
+	}
+
+	public default void turnStarted(int playerNumber) {
+	}
+
+	public default void shotRejected(int playerNumber, Coordinate c, Rejection reason) {
+	}
+
+	/**
+	 * Called when the player missed the deadline of his move or made too many
+	 * invalid shots, and {@link TurnScheduler} shoots at c for him instead.
+	 *
+	 * @param playerNumber the player whose move was replaced
+	 * @param c            the coordinate chosen by the fallback policy
+	 */
+	public default void shotReplaced(int playerNumber, Coordinate c) {
+	}
+
+	public default void shotFired(int playerNumber, int target, Coordinate c) {
+	}
+
+	public default void hit(int playerNumber, int target, Coordinate c) {
+	}
+
+	/**
+	 * Called when a shot sinks a boat, after {@link #hit(int, int, Coordinate)}.
+	 *
+	 * @param playerNumber the player who shot
+	 * @param target       the player whose boat was sunk
+	 * @param boat         the coordinates of all blocks of the boat
+	 * @param type         the type of the boat
+	 */
+	public default void sunk(int playerNumber, int target, Coordinate[] boat, BlockType type) {
+	}
+
+	public default void eliminated(int playerNumber) {
+	}
+
+	public default void gameOver(int winner) {
+	}
+}
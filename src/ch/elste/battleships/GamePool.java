@@ -0,0 +1,38 @@
+package ch.elste.battleships;
+
+/**
+ * Hands out one reusable cpu game per thread and mode, for workers that play
+ * many simulations back to back. A game taken from the pool reuses its grids
+ * and players, so starting the next game allocates nothing for the board.
+ *
+ * <p>
+ * The returned game belongs to the calling thread and is handed out again by
+ * the next call, so it must be finished before the thread asks for the next
+ * one. Listeners added to it stay registered.
+ *
+ * @author Dillon Elste
+ *
+ */
+public final class GamePool {
+	private static final ThreadLocal<Game> GAMES = ThreadLocal.withInitial(() -> Game.cpuVsCpu(false, 0));
+	private static final ThreadLocal<Game> SALVO_GAMES = ThreadLocal.withInitial(() -> Game.cpuVsCpu(true, 0));
+
+	private GamePool() {
+	}
+
+	/**
+	 * Returns the cpu game of this thread, initialized and ready to run. It plays
+	 * the same game as {@link Game#cpuVsCpu(boolean, long)} with the same
+	 * arguments.
+	 *
+	 * @param salvo true to play in salvo mode
+	 * @param seed  the seed of the game
+	 * @return the game of this thread
+	 */
+	public static Game cpuVsCpu(boolean salvo, long seed) {
+		Game g = (salvo ? SALVO_GAMES : GAMES).get();
+		g.setSeed(seed);
+		g.init();
+		return g;
+	}
+}
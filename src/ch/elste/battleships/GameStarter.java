@@ -1,22 +1,91 @@
 package ch.elste.battleships;
 
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Random;
 
 public class GameStarter {
 
 	public static void main(String[] args) {
 		Game g;
-		try {
-			if (args.length > 0)
-				g = new Game(new java.io.FileInputStream(args[0]));
+		boolean salvo = false;
+		boolean cpuOnly = false;
+		boolean timing = false;
+		long seed = new Random().nextLong();
+		String file = null;
+		String book = null;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--salvo"))
+				salvo = true;
+			else if (args[i].equals("--cpu"))
+				cpuOnly = true;
+			else if (args[i].equals("--timing"))
+				timing = true;
+			else if (args[i].equals("--seed") && i + 1 < args.length)
+				seed = Long.parseLong(args[++i]);
+			else if (args[i].equals("--book") && i + 1 < args.length)
+				book = args[++i];
 			else
-				g = new Game();
-		} catch (FileNotFoundException e) {
-			System.err.println("File was not found using standard input");
-			g = new Game();
+				file = args[i];
 		}
+
+		if (cpuOnly) {
+			g = Game.cpuVsCpu(salvo, seed);
+			g.addListener(new GameListener() {
+				@Override
+				public void gameOver(int winner) {
+					System.out.println("Player " + winner + " won");
+				}
+			});
+		} else {
+			try {
+				if (file != null)
+					g = new Game(new java.io.FileInputStream(file), salvo, seed);
+				else
+					g = new Game(System.in, salvo, seed);
+			} catch (FileNotFoundException e) {
+				System.err.println("File was not found using standard input");
+				g = new Game(System.in, salvo, seed);
+			}
+		}
+
+		if (book != null) {
+			try {
+				g.setOpeningBook(OpeningBook.load(Paths.get(book)));
+			} catch (IOException e) {
+				System.err.println("Opening book could not be loaded, shooting randomly: " + e.getMessage());
+			}
+		}
+
+		if (timing)
+			g.addListener(new FirstMoveTimer());
+
 		g.init();
 		g.run();
 	}
 
+	/**
+	 * Prints the time from the start of the process until the first shot to the
+	 * error stream. Used by the startup benchmark, which passes the launch time in
+	 * milliseconds since the epoch as system property {@code battleships.launched},
+	 * because the start time of the process is only known roughly.
+	 */
+	private static class FirstMoveTimer implements GameListener {
+		private boolean first = true;
+
+		@Override
+		public void shotFired(int playerNumber, int target, Coordinate c) {
+			if (!first)
+				return;
+
+			first = false;
+			Long launched = Long.getLong("battleships.launched");
+			Instant start = launched != null ? Instant.ofEpochMilli(launched)
+					: ProcessHandle.current().info().startInstant().orElse(Instant.now());
+			System.err.println("time-to-first-move-ms " + Duration.between(start, Instant.now()).toMillis());
+		}
+	}
 }
@@ -1,13 +1,77 @@
 package ch.elste.battleships;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import ch.elste.battleships.Block.BlockType;
 import ch.elste.battleships.Exceptions.IllegalBoatSpecException;
 
+/**
+ * The state of a free-for-all game of 2 to {@value #MAX_PLAYERS} players. The
+ * grid at index i belongs to the player with number i. Every shot names the
+ * player it targets, the methods without a target shoot at the next player in
+ * turn order, which for two players is always the opponent.
+ * 
+ * <p>
+ * Players whose boats are all hit are eliminated and skipped in turn order. The
+ * remaining players are kept as a bit set, so turn order, elimination and
+ * victory detection are O(1) per shot regardless of the number of players.
+ * 
+ * @author Dillon Elste
+ *
+ */
 public class GameState {
+	public static final int MAX_PLAYERS = 64;
 
 	private Grid[] grids;
 
+	/**
+	 * The bit i is set if player i is not eliminated yet.
+	 */
+	private long alive;
+
+	private GameEvents events;
+
 	public GameState(Grid[] grids) {
+		if (grids.length < 2 || grids.length > MAX_PLAYERS)
+			throw new IllegalArgumentException("Unsupported number of players: " + grids.length);
+
 		this.grids = grids;
+		this.events = new GameEvents();
+		this.alive = 0;
+		for (int i = 0; i < grids.length; i++) {
+			if (grids[i].getHitCount() < Grid.BOAT_BLOCK_COUNT)
+				alive |= 1L << i;
+		}
+	}
+
+	/**
+	 * Empties all grids and revives all players for the next game, keeping the
+	 * listeners. The boats have to be added again, e.g. by
+	 * {@link GameStateFactory#reset(GameState)}.
+	 */
+	public void reset() {
+		for (Grid g : grids) {
+			g.reset();
+		}
+		alive = grids.length == MAX_PLAYERS ? -1L : (1L << grids.length) - 1;
+	}
+
+	/**
+	 * Returns a copy of this GameState for searching and what-if analysis. Shots
+	 * fired in the copy do not affect this GameState and vice versa. Only the
+	 * shot state of each grid is copied, so forking is cheap. Listeners are not
+	 * copied.
+	 * 
+	 * @return an independent copy of this GameState
+	 */
+	public GameState fork() {
+		Grid[] copies = new Grid[grids.length];
+		for (int i = 0; i < grids.length; i++) {
+			copies[i] = grids[i].fork();
+		}
+		return new GameState(copies);
 	}
 
 	/**
@@ -43,7 +107,24 @@ public class GameState {
 	 *                                  grid.
 	 */
 	public boolean isValid(Coordinate c, int playerNumber) throws IllegalBoatSpecException {
-		return grids[1 - playerNumber].isShootable(c);
+		return isValid(c, playerNumber, getNextPlayer(playerNumber));
+	}
+
+	/**
+	 * Returns true if the player with Id {@code playerNumber} can shoot the block
+	 * at c in the grid of player {@code target}.
+	 * 
+	 * @param c            the coordinate to check
+	 * @param playerNumber the player who wants to shoot.
+	 * @param target       the player whose grid is shot at
+	 * @return true if the coordinate can be shot, false otherwise
+	 * @throws IllegalBoatSpecException if the given coordinates are outside the
+	 *                                  grid.
+	 * @throws IllegalArgumentException if target is the shooter or eliminated.
+	 */
+	public boolean isValid(Coordinate c, int playerNumber, int target) throws IllegalBoatSpecException {
+		checkTarget(playerNumber, target);
+		return grids[target].isShootable(c);
 	}
 
 	/**
@@ -55,20 +136,275 @@ public class GameState {
 	 * @return true if there was a boat at c and it is now sunk, false otherwise.
 	 */
 	public boolean shoot(Coordinate c, int playerNumber) {
-		return grids[1 - playerNumber].shoot(c);
+		return shoot(c, playerNumber, getNextPlayer(playerNumber));
 	}
 
 	/**
-	 * Returns the number of the player who won or -1 if there is no winner.
+	 * Player with Id {@code playerNumber} shoots at coordinate c in the grid of
+	 * player {@code target}. If this hits the last boat block of target, target is
+	 * eliminated.
 	 * 
-	 * @return the number of the player who won or -1 if there is no winner
+	 * @param c            the coordinate to shoot
+	 * @param playerNumber the player who shoots
+	 * @param target       the player whose grid is shot at
+	 * @return true if there was a boat at c and it is now sunk, false otherwise.
+	 * @throws IllegalArgumentException if target is the shooter or eliminated, or
+	 *                                  if c was already shot.
 	 */
-	public int getWinner() {
-		for (int i = 0; i < grids.length; i++) {
-			if (grids[i].getHitCount() == Grid.BOAT_BLOCK_COUNT) {
-				return i;
+	public boolean shoot(Coordinate c, int playerNumber, int target) {
+		checkTarget(playerNumber, target);
+		boolean sunk = grids[target].shoot(c);
+		if (!events.isEmpty()) {
+			events.shotFired(playerNumber, target, c);
+			if (grids[target].getTypeAt(c) != BlockType.WATER)
+				events.hit(playerNumber, target, c);
+			if (sunk)
+				events.sunk(playerNumber, target, grids[target].getBoatAt(c), grids[target].getTypeAt(c));
+		}
+		checkEliminated(target);
+		return sunk;
+	}
+
+	/**
+	 * Player with Id {@code playerNumber} fires a salvo at all given blocks of the
+	 * opponent's grid. The blocks are given as indices as described in
+	 * {@link BitBoard}.
+	 * 
+	 * @param cells        the indices of the blocks to shoot
+	 * @param playerNumber the player who shoots
+	 * @return the masks of the hit blocks and of the boats sunk by the salvo.
+	 */
+	public SalvoResult shootAll(int[] cells, int playerNumber) {
+		return shootAll(cells, playerNumber, getNextPlayer(playerNumber));
+	}
+
+	/**
+	 * Player with Id {@code playerNumber} fires a salvo at all given blocks of the
+	 * grid of player {@code target}.
+	 * 
+	 * @param cells        the indices of the blocks to shoot
+	 * @param playerNumber the player who shoots
+	 * @param target       the player whose grid is shot at
+	 * @return the masks of the hit blocks and of the boats sunk by the salvo.
+	 * @throws IllegalArgumentException if target is the shooter or eliminated, or
+	 *                                  if a block was already shot.
+	 */
+	public SalvoResult shootAll(int[] cells, int playerNumber, int target) {
+		checkTarget(playerNumber, target);
+		SalvoResult res = grids[target].shootAll(cells);
+		if (!events.isEmpty())
+			publishSalvo(cells, playerNumber, target, res);
+		checkEliminated(target);
+		return res;
+	}
+
+	private void publishSalvo(int[] cells, int playerNumber, int target, SalvoResult res) {
+		Grid g = grids[target];
+		long[] reported = BitBoard.empty(g.getGridsize()); // sunk blocks that were already published
+		for (int cell : cells) {
+			Coordinate c = new Coordinate(cell / g.getGridsize(), cell % g.getGridsize());
+			events.shotFired(playerNumber, target, c);
+			if (res.isHit(cell))
+				events.hit(playerNumber, target, c);
+		}
+
+		for (int cell : cells) {
+			if (!res.isSunk(cell) || BitBoard.get(reported, cell))
+				continue;
+
+			Coordinate c = new Coordinate(cell / g.getGridsize(), cell % g.getGridsize());
+			Coordinate[] boat = g.getBoatAt(c);
+			for (Coordinate b : boat) {
+				BitBoard.set(reported, BitBoard.index(g.getGridsize(), b.getX(), b.getY()));
 			}
+			events.sunk(playerNumber, target, boat, g.getTypeAt(c));
 		}
-		return -1;
+	}
+
+	/**
+	 * Returns the blocks of {@code mask} which the player with Id
+	 * {@code playerNumber} can still shoot in the opponent's grid.
+	 * 
+	 * @param mask         the blocks to filter as described in {@link BitBoard}
+	 * @param playerNumber the player who wants to shoot.
+	 * @return a new mask with only the shootable blocks set
+	 */
+	public long[] filterShootable(long[] mask, int playerNumber) {
+		return grids[getNextPlayer(playerNumber)].filterShootable(mask);
+	}
+
+	/**
+	 * Returns the number of blocks of the opponent's grid the player with Id
+	 * {@code playerNumber} can still shoot.
+	 * 
+	 * @param playerNumber the player who wants to shoot.
+	 * @return the number of legal shots
+	 */
+	public int legalShotCount(int playerNumber) {
+		return grids[getNextPlayer(playerNumber)].legalShotCount();
+	}
+
+	/**
+	 * Returns the Zobrist hash of the opponent's grid as seen by the player with Id
+	 * {@code playerNumber}, see {@link Grid#getObservedHash()}.
+	 * 
+	 * @param playerNumber the player who wants to shoot.
+	 * @return the hash of the observed state of the opponent's grid
+	 */
+	public long getObservedHash(int playerNumber) {
+		return grids[getNextPlayer(playerNumber)].getObservedHash();
+	}
+
+	/**
+	 * Returns a uniformly chosen block of the opponent's grid the player with Id
+	 * {@code playerNumber} can still shoot, in constant time.
+	 * 
+	 * @param rng          the source of randomness
+	 * @param playerNumber the player who wants to shoot.
+	 * @return the coordinate of a legal shot
+	 * @throws IllegalStateException if all blocks were shot
+	 */
+	public Coordinate randomLegalShot(Random rng, int playerNumber) {
+		return grids[getNextPlayer(playerNumber)].randomLegalShot(rng);
+	}
+
+	/**
+	 * Returns the grid of player {@code playerNumber}.
+	 * 
+	 * @param playerNumber the player the grid belongs to
+	 * @return the grid of the player
+	 */
+	Grid getGrid(int playerNumber) {
+		return grids[playerNumber];
+	}
+
+	/**
+	 * Returns the number of the player who moves after player
+	 * {@code playerNumber}, skipping eliminated players.
+	 * 
+	 * @param playerNumber the player who just moved
+	 * @return the next player that is not eliminated
+	 */
+	public int getNextPlayer(int playerNumber) {
+		long after = playerNumber == MAX_PLAYERS - 1 ? 0 : alive & (-1L << (playerNumber + 1));
+		return Long.numberOfTrailingZeros(after != 0 ? after : alive); // wrap around
+	}
+
+	/**
+	 * Returns true if all boats of player {@code playerNumber} were hit.
+	 * 
+	 * @param playerNumber the player to check
+	 * @return true if the player is eliminated
+	 */
+	public boolean isEliminated(int playerNumber) {
+		return (alive & (1L << playerNumber)) == 0;
+	}
+
+	/**
+	 * Returns the number of players that are not eliminated.
+	 * 
+	 * @return the number of remaining players
+	 */
+	public int getPlayersLeft() {
+		return Long.bitCount(alive);
+	}
+
+	public int getPlayerCount() {
+		return grids.length;
+	}
+
+	private void checkTarget(int playerNumber, int target) {
+		if (target == playerNumber || isEliminated(target))
+			throw new IllegalArgumentException(
+					String.format("Player %d can't shoot at player %d", playerNumber, target));
+	}
+
+	private void checkEliminated(int playerNumber) {
+		if (isEliminated(playerNumber) || grids[playerNumber].getHitCount() < Grid.BOAT_BLOCK_COUNT)
+			return;
+
+		alive &= ~(1L << playerNumber);
+		events.eliminated(playerNumber);
+		if (getWinner() != -1)
+			events.gameOver(getWinner());
+	}
+
+	/**
+	 * Registers a listener for the shot events of this GameState.
+	 * 
+	 * @param l the listener to add
+	 */
+	public void addListener(GameListener l) {
+		events.add(l);
+	}
+
+	public void removeListener(GameListener l) {
+		events.remove(l);
+	}
+
+	/**
+	 * Returns how many boats of the player with Id {@code playerNumber} are not
+	 * sunk yet.
+	 * 
+	 * @param playerNumber the player whose boats should be counted
+	 * @return the number of remaining boats
+	 */
+	public int getRemainingBoats(int playerNumber) {
+		return grids[playerNumber].getRemainingBoats();
+	}
+
+	/**
+	 * Returns the number of bytes {@link #writeTo(ByteBuffer)} writes.
+	 * 
+	 * @return the size of this GameState in a snapshot
+	 */
+	int getSnapshotSize() {
+		int size = 1;
+		for (Grid g : grids) {
+			size += g.getSnapshotSize();
+		}
+		return size;
+	}
+
+	/**
+	 * Writes all grids to buf, so they can be restored with
+	 * {@link #readFrom(ByteBuffer)}.
+	 * 
+	 * @param buf the buffer to write to
+	 */
+	void writeTo(ByteBuffer buf) {
+		buf.put((byte) grids.length);
+		for (Grid g : grids) {
+			g.writeTo(buf);
+		}
+	}
+
+	/**
+	 * Reads a GameState written by {@link #writeTo(ByteBuffer)}.
+	 * 
+	 * @param buf the buffer to read from
+	 * @return the restored GameState
+	 * @throws IOException if the number of players is out of range or a grid is
+	 *                     corrupt
+	 */
+	static GameState readFrom(ByteBuffer buf) throws IOException {
+		int players = buf.get();
+		if (players <= 0 || players > MAX_PLAYERS)
+			throw new IOException("Corrupt game: " + players + " players");
+		Grid[] grids = new Grid[players];
+		for (int i = 0; i < grids.length; i++) {
+			grids[i] = Grid.readFrom(buf);
+		}
+		return new GameState(grids);
+	}
+
+	/**
+	 * Returns the number of the player who won or -1 if there is no winner. The
+	 * winner is the last player that is not eliminated.
+	 * 
+	 * @return the number of the player who won or -1 if there is no winner
+	 */
+	public int getWinner() {
+		return Long.bitCount(alive) == 1 ? Long.numberOfTrailingZeros(alive) : -1;
 	}
 }
@@ -1,6 +1,7 @@
 package ch.elste.battleships;
 
 import ch.elste.battleships.Block.BlockType;
+import ch.elste.battleships.GameListener.Rejection;
 import ch.elste.battleships.Exceptions.BoatCollisionException;
 import ch.elste.battleships.Exceptions.IllegalBoatSpecException;
 
@@ -12,15 +13,27 @@ import ch.elste.battleships.Exceptions.IllegalBoatSpecException;
  */
 public class GameStateFactory {
 	private Player[] players;
+	private GameEvents events;
 
 	/**
-	 * The order of p1 and p2 does matter.
+	 * The order of the players does matter. Each player's number has to be its
+	 * index.
 	 * 
-	 * @param p1 a usr player
-	 * @param p2 a cpu player
+	 * @param players at least two players
 	 */
-	public GameStateFactory(Player p1, Player p2) {
-		this.players = new Player[] { p1, p2 };
+	public GameStateFactory(Player... players) {
+		this.players = players;
+		this.events = new GameEvents();
+	}
+
+	/**
+	 * Registers a listener for the boat placement events. The listener is also
+	 * added to every GameState created by this factory.
+	 * 
+	 * @param l the listener to add
+	 */
+	public void addListener(GameListener l) {
+		events.add(l);
 	}
 
 	/**
@@ -32,7 +45,7 @@ public class GameStateFactory {
 	 * @param type the type of boat to add
 	 * @throws IllegalBoatSpecException if the boat is diagonal or of wrong size
 	 */
-	private void assertBoatSpecs(Coordinate from, Coordinate to, BlockType type) throws IllegalBoatSpecException {
+	private static void assertBoatSpecs(Coordinate from, Coordinate to, BlockType type) throws IllegalBoatSpecException {
 		if (from.getX() != to.getX() && from.getY() != to.getY()// make sure not diagonal
 				|| from.getDistance(to) + 1 != type.length) { // +1 to get distance, because getDistance is exclusive to
 			throw new IllegalBoatSpecException();
@@ -47,34 +60,47 @@ public class GameStateFactory {
 	 * @param t the type of boats to ask.
 	 */
 	private void addBoatsOfType(Grid g, Player p, BlockType t) {
-		Coordinate[] cs;
 		for (int i = 0; i < t.amount; i++) { // each type of boat
-			if (p.getPlayerNumber() == players[0].getPlayerNumber()) {
-				// print current state
-				Output.clearScreen();
-				Output.printGrid(g, "Current Grid");
-			}
+			events.boatRequested(p.getPlayerNumber(), g, t);
 
-			while (true) { // do as long as a valid boat was received
-				cs = p.getBoat(t); // ask player for Boat
-				try {
-					assertBoatSpecs(cs[0], cs[1], t); // check size and orientation
-					g.addBoat(cs[0], cs[1], t, p.getPlayerNumber());
-				} catch (IllegalBoatSpecException e) {
-					if (p.getPlayerNumber() == players[0].getPlayerNumber())
-						Output.println("Incorrect size or orientation. Please try again:");
-					continue; // invalid boat specs -> try again
-				} catch (BoatCollisionException e) {
-					if (p.getPlayerNumber() == players[0].getPlayerNumber())
-						Output.println("There is already another boat obstructing this square. Try again:");
-					continue; // collision with already placed boat -> try again
-				}
-
-				break; // boat could be placed
+			while (!tryAddBoat(g, p.getPlayerNumber(), p.getBoat(t), t, events)) {
+				// do as long as a valid boat was received
 			}
 		}
 	}
 
+	/**
+	 * Adds the boat cs of type t to the grid g, if it is inside the grid, has the
+	 * right size and orientation and doesn't collide with another boat.
+	 * 
+	 * @param g            the grid belonging to the player
+	 * @param playerNumber the player who placed the boat
+	 * @param cs           the start and end coordinate of the boat
+	 * @param t            the type of the boat
+	 * @param events       receives the placed or rejected event
+	 * @return true if the boat could be placed, false otherwise
+	 */
+	static boolean tryAddBoat(Grid g, int playerNumber, Coordinate[] cs, BlockType t, GameEvents events) {
+		if (!g.isInside(cs[0]) || !g.isInside(cs[1])) {
+			events.boatRejected(playerNumber, t, Rejection.OUTSIDE_GRID);
+			return false; // outside the grid -> try again
+		}
+
+		try {
+			assertBoatSpecs(cs[0], cs[1], t); // check size and orientation
+			g.addBoat(cs[0], cs[1], t, playerNumber);
+		} catch (IllegalBoatSpecException e) {
+			events.boatRejected(playerNumber, t, Rejection.ILLEGAL_BOAT_SPEC);
+			return false; // invalid boat specs -> try again
+		} catch (BoatCollisionException e) {
+			events.boatRejected(playerNumber, t, Rejection.BOAT_COLLISION);
+			return false; // collision with already placed boat -> try again
+		}
+
+		events.boatPlaced(playerNumber, cs[0], cs[1], t);
+		return true; // boat could be placed
+	}
+
 	/**
 	 * Let Player p place all his boats on the grid.
 	 * 
@@ -94,13 +120,32 @@ public class GameStateFactory {
 	 * @return GameState object ready for the first move.
 	 */
 	public GameState getGameState(int gridsize) {
-		Grid[] grids = { new Grid(gridsize), new Grid(gridsize) }; // init grids
+		Grid[] grids = new Grid[players.length];
 
 		for (int i = 0; i < players.length; i++) {
+			grids[i] = new Grid(gridsize); // init grid
 			addBoats(grids[i], players[i]); // populate grids
 		}
 
 		GameState g = new GameState(grids); // create GameState
+		g.addListener(events);
 		return g;
 	}
+
+	/**
+	 * Prepares a GameState of a finished game for the next game, like
+	 * {@link #getGameState(int)} but reusing its grids instead of allocating new
+	 * ones. The listeners of gs are kept.
+	 * 
+	 * @param gs a GameState with one grid per player of this factory
+	 */
+	public void reset(GameState gs) {
+		if (gs.getPlayerCount() != players.length)
+			throw new IllegalArgumentException("GameState has " + gs.getPlayerCount() + " players");
+
+		gs.reset();
+		for (int i = 0; i < players.length; i++) {
+			addBoats(gs.getGrid(i), players[i]); // populate grids
+		}
+	}
 }
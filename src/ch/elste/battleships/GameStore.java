@@ -0,0 +1,319 @@
+package ch.elste.battleships;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+import ch.elste.battleships.Block.BlockType;
+
+/**
+ * Keeps many games outside of the Java heap. Every game lives in a fixed-size
+ * slot of a direct buffer and is referred to by the number of its slot, so a
+ * stored game costs no heap objects and the garbage collector never scans the
+ * boards. The slots of finished games are recycled.
+ *
+ * <p>
+ * A slot starts with the bit set of the players that are not eliminated, like
+ * the one of {@link GameState}, followed by the game in its snapshot format.
+ * Shots can be fired directly on a slot, the other queries need a {@link GameState}
+ * loaded with {@link #load(int)} and written back with
+ * {@link #store(int, GameState)}.
+ *
+ * <p>
+ * {@link #allocate(GameState)} and {@link #free(int)} are thread-safe. A slot
+ * must only be used by one thread at a time. Every access checks that the slot
+ * holds a game, so using a freed slot throws an {@link IllegalStateException}
+ * until the slot is handed out again.
+ *
+ * @author Dillon Elste
+ *
+ */
+public class GameStore {
+	/**
+	 * The size of a slab, the buffers slots are cut from.
+	 */
+	private static final int SLAB_SIZE = 1 << 24;
+
+	private static final BlockType[] TYPES = BlockType.values();
+	private static final byte WATER = (byte) BlockType.WATER.ordinal();
+
+	private final int gridsize;
+	private final int players;
+	private final int gridBytes;
+	private final int slotSize;
+	private final int slotsPerSlab;
+	private final int words;
+
+	/**
+	 * Replaced by a longer copy when a slab is added, so readers need no lock.
+	 */
+	private volatile ByteBuffer[] slabs = new ByteBuffer[0];
+
+	/**
+	 * The number of slots that were ever handed out.
+	 */
+	private int used;
+
+	/**
+	 * The first free slot, or -1. Every free slot stores the next free slot.
+	 */
+	private int freeHead = -1;
+	private int live;
+
+	/**
+	 * @param gridsize the side-length of the grids of the games
+	 * @param players  the number of players of the games
+	 */
+	public GameStore(int gridsize, int players) {
+		if (players < 2 || players > GameState.MAX_PLAYERS)
+			throw new IllegalArgumentException("Unsupported number of players: " + players);
+
+		this.gridsize = gridsize;
+		this.players = players;
+		this.gridBytes = Grid.getSnapshotSize(gridsize);
+		this.slotSize = 8 + 1 + players * gridBytes;
+		this.slotsPerSlab = Math.max(1, SLAB_SIZE / slotSize);
+		this.words = BitBoard.words(gridsize);
+	}
+
+	/**
+	 * Copies gs into a free slot.
+	 *
+	 * @param gs the game to store
+	 * @return the number of the slot
+	 * @throws IllegalArgumentException if the grid size or number of players of gs
+	 *                                  don't match this store
+	 */
+	public synchronized int allocate(GameState gs) {
+		int slot;
+		if (freeHead != -1) {
+			slot = freeHead;
+			freeHead = slab(slot).getInt(stateOffset(slot) + 1);
+		} else {
+			if (used == slabs.length * slotsPerSlab) {
+				ByteBuffer[] more = Arrays.copyOf(slabs, slabs.length + 1);
+				more[slabs.length] = ByteBuffer.allocateDirect(slotsPerSlab * slotSize);
+				slabs = more;
+			}
+			slot = used++;
+		}
+		live++;
+		write(slot, gs);
+		return slot;
+	}
+
+	/**
+	 * Releases a slot, e.g. when its game has ended. The slot must not be used
+	 * afterwards.
+	 *
+	 * @param slot the slot to release
+	 * @throws IllegalStateException if the slot is already free
+	 */
+	public synchronized void free(int slot) {
+		ByteBuffer slab = allocated(slot);
+		int off = stateOffset(slot);
+		slab.put(off, (byte) 0); // a stored game has at least two players
+		slab.putInt(off + 1, freeHead);
+		freeHead = slot;
+		live--;
+	}
+
+	/**
+	 * Returns the number of stored games.
+	 *
+	 * @return the number of allocated slots
+	 */
+	public synchronized int size() {
+		return live;
+	}
+
+	/**
+	 * Returns a copy of the game in slot on the heap.
+	 *
+	 * @param slot the slot to read
+	 * @return the stored game
+	 */
+	public GameState load(int slot) {
+		try {
+			return GameState.readFrom(allocated(slot).slice(stateOffset(slot), slotSize - 8));
+		} catch (IOException e) {
+			// only this store writes its slots
+			throw new IllegalStateException("Corrupt slot " + slot, e);
+		}
+	}
+
+	/**
+	 * Overwrites the game in slot with gs.
+	 *
+	 * @param slot the slot to write
+	 * @param gs   the game to store
+	 * @throws IllegalArgumentException if the grid size or number of players of gs
+	 *                                  don't match this store
+	 */
+	public void store(int slot, GameState gs) {
+		allocated(slot);
+		write(slot, gs);
+	}
+
+	private void write(int slot, GameState gs) {
+		if (gs.getPlayerCount() != players || gs.getGrid(0).getGridsize() != gridsize)
+			throw new IllegalArgumentException(
+					String.format("Store holds %d players on %dx%d grids", players, gridsize, gridsize));
+
+		long alive = 0;
+		for (int p = 0; p < players; p++) {
+			if (!gs.isEliminated(p))
+				alive |= 1L << p;
+		}
+		ByteBuffer slab = slab(slot);
+		slab.putLong(offset(slot), alive);
+		gs.writeTo(slab.slice(stateOffset(slot), slotSize - 8));
+	}
+
+	/**
+	 * Returns true if the block at index cell of player {@code target}'s grid can
+	 * still be shot.
+	 *
+	 * @param slot   the slot of the game
+	 * @param cell   the index of the block as described in {@link BitBoard}
+	 * @param target the player whose grid is shot at
+	 * @return true if the block wasn't shot yet
+	 */
+	public boolean isShootable(int slot, int cell, int target) {
+		return !getBit(allocated(slot), shotOffset(slot, target), cell);
+	}
+
+	/**
+	 * Player with Id {@code playerNumber} shoots at the block at index cell of
+	 * player {@code target}'s grid, like {@link GameState#shoot(Coordinate, int,
+	 * int)}. No events are published.
+	 *
+	 * @param slot         the slot of the game
+	 * @param cell         the index of the block as described in {@link BitBoard}
+	 * @param playerNumber the player who shoots
+	 * @param target       the player whose grid is shot at
+	 * @return true if there was a boat at cell and it is now sunk, false otherwise.
+	 * @throws IllegalArgumentException if target is the shooter or eliminated, or
+	 *                                  if the block was already shot.
+	 */
+	public boolean shoot(int slot, int cell, int playerNumber, int target) {
+		ByteBuffer slab = allocated(slot);
+		long alive = slab.getLong(offset(slot));
+		if (target == playerNumber || (alive & (1L << target)) == 0)
+			throw new IllegalArgumentException(
+					String.format("Player %d can't shoot at player %d", playerNumber, target));
+
+		int grid = gridOffset(slot, target);
+		int shot = shotOffset(slot, target);
+		if (getBit(slab, shot, cell))
+			throw new IllegalArgumentException("Already shot: " + cell);
+
+		setBit(slab, shot, cell);
+		int types = grid + 3;
+		byte type = slab.get(types + cell);
+		if (type == WATER)
+			return false;
+
+		IntPredicate water = i -> slab.get(types + i) == WATER;
+		int step = Grid.boatStep(gridsize, cell, water);
+		int start = Grid.boatStart(gridsize, cell, step, water);
+
+		int length = TYPES[type].length;
+		for (int i = 0; i < length; i++) {
+			if (!getBit(slab, shot, start + i * step))
+				return false;
+		}
+
+		int sunk = shot + 2 * 8 * words;
+		for (int i = 0; i < length; i++) {
+			setBit(slab, sunk, start + i * step);
+		}
+		byte sunkCount = (byte) (slab.get(grid + 2) + 1);
+		slab.put(grid + 2, sunkCount);
+		if (sunkCount == Grid.BOAT_COUNT)
+			slab.putLong(offset(slot), alive & ~(1L << target)); // eliminated
+		return true;
+	}
+
+	/**
+	 * Returns the number of the player who moves after player
+	 * {@code playerNumber}, skipping eliminated players.
+	 *
+	 * @param slot         the slot of the game
+	 * @param playerNumber the player who just moved
+	 * @return the next player that is not eliminated
+	 */
+	public int getNextPlayer(int slot, int playerNumber) {
+		long alive = allocated(slot).getLong(offset(slot));
+		long after = playerNumber == GameState.MAX_PLAYERS - 1 ? 0 : alive & (-1L << (playerNumber + 1));
+		return Long.numberOfTrailingZeros(after != 0 ? after : alive); // wrap around
+	}
+
+	/**
+	 * Returns the number of the player who won or -1 if there is no winner.
+	 *
+	 * @param slot the slot of the game
+	 * @return the number of the player who won or -1 if there is no winner
+	 */
+	public int getWinner(int slot) {
+		long alive = allocated(slot).getLong(offset(slot));
+		return Long.bitCount(alive) == 1 ? Long.numberOfTrailingZeros(alive) : -1;
+	}
+
+	private ByteBuffer slab(int slot) {
+		return slabs[slot / slotsPerSlab];
+	}
+
+	/**
+	 * Returns the slab of slot after checking that the slot holds a game, so a
+	 * stale or invalid slot number can't write into memory of another game.
+	 *
+	 * @throws IndexOutOfBoundsException if the slot was never handed out
+	 * @throws IllegalStateException     if the slot is free
+	 */
+	private ByteBuffer allocated(int slot) {
+		ByteBuffer[] s = slabs;
+		if (slot < 0 || slot / slotsPerSlab >= s.length)
+			throw new IndexOutOfBoundsException("No such slot: " + slot);
+
+		ByteBuffer slab = s[slot / slotsPerSlab];
+		if (slab.get(stateOffset(slot)) == 0) // slots that were never used are zeroed
+			throw new IllegalStateException("Slot " + slot + " is free");
+		return slab;
+	}
+
+	private int offset(int slot) {
+		return (slot % slotsPerSlab) * slotSize;
+	}
+
+	/**
+	 * Returns the offset of the game in its slab, after the bit set of remaining
+	 * players. The first byte is the number of players, or 0 if the slot is free.
+	 */
+	private int stateOffset(int slot) {
+		return offset(slot) + 8;
+	}
+
+	/**
+	 * Returns the offset of the grid of player p in its slab, as written by
+	 * {@link Grid#writeTo(ByteBuffer)}: the grid size, the number of sunk boats,
+	 * the block types and the masks of shot, revealed and sunk blocks.
+	 */
+	private int gridOffset(int slot, int p) {
+		return stateOffset(slot) + 1 + p * gridBytes;
+	}
+
+	private int shotOffset(int slot, int p) {
+		return gridOffset(slot, p) + 3 + gridsize * gridsize;
+	}
+
+	private static boolean getBit(ByteBuffer slab, int mask, int i) {
+		return (slab.getLong(mask + 8 * (i >>> 6)) & (1L << i)) != 0;
+	}
+
+	private static void setBit(ByteBuffer slab, int mask, int i) {
+		int at = mask + 8 * (i >>> 6);
+		slab.putLong(at, slab.getLong(at) | 1L << i);
+	}
+}
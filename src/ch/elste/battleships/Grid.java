@@ -1,5 +1,11 @@
 package ch.elste.battleships;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntPredicate;
+
 import ch.elste.battleships.Block.BlockType;
 import ch.elste.battleships.Exceptions.BoatCollisionException;
 import ch.elste.battleships.Exceptions.IllegalBoatSpecException;
@@ -17,54 +23,246 @@ public class Grid {
 	public static final char SYMBOL_MISS = 'O';
 
 	public static final int BOAT_BLOCK_COUNT = 1 * 6 + 2 * 4 + 3 * 3 + 4 * 2;
+	public static final int BOAT_COUNT = 1 + 2 + 3 + 4;
+
+	private static final BlockType[] TYPES = BlockType.values();
+	private static final byte WATER = (byte) BlockType.WATER.ordinal();
+
+	/**
+	 * The states of a shot block as seen by the opponent, see
+	 * {@link #getObservedHash()}.
+	 */
+	private static final int MISS = 1, HIT = 2, SUNK = 3;
+
+	private final int gridsize;
+
+	/**
+	 * The ordinal of the {@link BlockType} of every block, indexed as described in
+	 * {@link BitBoard}.
+	 */
+	private byte[] types;
 
 	/**
-	 * All blocks contained in this grid.
+	 * Masks of the blocks that are part of a boat, were shot, show their boat
+	 * symbol before being sunk and belong to a sunk boat.
 	 */
-	private Block[][] data;
+	private long[] occupied, shot, revealed, sunk;
+
+	/**
+	 * True if {@link #types}, {@link #occupied} and {@link #revealed} are shared
+	 * with a fork of this grid and need to be copied before a boat is added.
+	 */
+	private boolean layoutShared;
+
+	/**
+	 * Tells if the block with the given index is water, reading the current
+	 * layout also after a copy on write.
+	 */
+	private final IntPredicate water = i -> types[i] == WATER;
+
+	/**
+	 * The indices of all blocks that weren't shot yet in no particular order, only
+	 * the first {@link #legalCount} entries are used. {@link #legalPos} holds the
+	 * position of every unshot block in this array, so a shot block can be
+	 * swapped out in constant time.
+	 */
+	private int[] legal, legalPos;
+	private int legalCount;
+
+	/**
+	 * The Zobrist hash of the shot, hit and sunk blocks.
+	 */
+	private long observedHash;
 
 	/**
 	 * Counts how many non-water blocks have been shot.
 	 */
 	private int hitCount;
 
+	/**
+	 * Counts how many boats have been sunk.
+	 */
+	private int sunkCount;
+
 	/**
 	 * Creates a new Grid of size {@code gridsize*gridsize}.
 	 * 
 	 * @param gridsize the side length of the grid.
 	 */
 	public Grid(int gridsize) {
+		this.gridsize = gridsize;
 		hitCount = 0;
-		data = new Block[gridsize][gridsize];
-		for (int r = 0; r < gridsize; r++)
-			for (int c = 0; c < gridsize; c++)
-				data[r][c] = new Block();
+		sunkCount = 0;
+		types = new byte[gridsize * gridsize];
+		occupied = BitBoard.empty(gridsize);
+		shot = BitBoard.empty(gridsize);
+		revealed = BitBoard.empty(gridsize);
+		sunk = BitBoard.empty(gridsize);
+		legal = new int[gridsize * gridsize];
+		legalPos = new int[gridsize * gridsize];
+		resetLegal();
 	}
 
 	/**
-	 * Finds the start of the Boat containing Block (x, y). If the block at (x, y)
-	 * is not part of a boat or {@code (x, y)} is outside the grid, this method's
-	 * behavior is undefined.
+	 * Creates a copy of the grid {@code other}. The boat layout is shared by both
+	 * grids until one of them adds another boat, only the shot state is copied.
 	 * 
-	 * @param dir the direction to check in. 1 means horizontal, 0 means vertical.
-	 * @param x   the x coordinate of the block to check
-	 * @param y   the y coordinate of the block to check
-	 * @return the coordinate of the start block
+	 * @param other the grid to copy
 	 */
-	private Coordinate findStart(int dir, int x, int y) {
-		if ((dir == 1 && x == 0) || (dir == 0 && y == 0)) // we are at border => block is start
-			return new Coordinate(x, y);
+	private Grid(Grid other) {
+		this.gridsize = other.gridsize;
+		this.hitCount = other.hitCount;
+		this.sunkCount = other.sunkCount;
+		this.types = other.types;
+		this.occupied = other.occupied;
+		this.revealed = other.revealed;
+		this.shot = other.shot.clone();
+		this.sunk = other.sunk.clone();
+		this.legal = other.legal.clone();
+		this.legalPos = other.legalPos.clone();
+		this.legalCount = other.legalCount;
+		this.observedHash = other.observedHash;
+		this.layoutShared = true;
+		other.layoutShared = true;
+	}
 
-		while (!data[x - 1 * dir][y - 1 * (1 - dir)].isType(BlockType.WATER)) {
-			x -= 1 * dir;
-			y -= 1 * (1 - dir);
+	/**
+	 * Empties this grid for the next game without allocating, as if it was just
+	 * created. Only if the boat layout is shared with a fork, new arrays are
+	 * allocated for it.
+	 */
+	public void reset() {
+		if (layoutShared) {
+			types = new byte[gridsize * gridsize];
+			occupied = BitBoard.empty(gridsize);
+			revealed = BitBoard.empty(gridsize);
+			layoutShared = false;
+		} else {
+			Arrays.fill(types, WATER);
+			Arrays.fill(occupied, 0);
+			Arrays.fill(revealed, 0);
+		}
+		Arrays.fill(shot, 0);
+		Arrays.fill(sunk, 0);
+		hitCount = 0;
+		sunkCount = 0;
+		observedHash = 0;
+		resetLegal();
+	}
 
-			// bounds check.
-			if ((dir == 1 && x == 0) || (dir == 0 && y == 0))
-				break;
+	/**
+	 * Returns an independent copy of this grid. Shooting the copy does not affect
+	 * this grid and vice versa.
+	 * 
+	 * @return a copy of this grid
+	 */
+	public Grid fork() {
+		return new Grid(this);
+	}
+
+	/**
+	 * Fills the legal shots with all blocks that weren't shot yet.
+	 */
+	private void resetLegal() {
+		legalCount = 0;
+		for (int i = 0; i < legal.length; i++) {
+			if (!BitBoard.get(shot, i)) {
+				legal[legalCount] = i;
+				legalPos[i] = legalCount++;
+			}
 		}
+	}
 
-		return new Coordinate(x, y);
+	/**
+	 * Removes block i from the legal shots by moving the last legal shot into its
+	 * place.
+	 * 
+	 * @param i the index of the block that was shot
+	 */
+	private void removeLegal(int i) {
+		int pos = legalPos[i];
+		int last = legal[--legalCount];
+		legal[pos] = last;
+		legalPos[last] = pos;
+	}
+
+	/**
+	 * Recomputes the Zobrist hash from the masks.
+	 */
+	private void resetObservedHash() {
+		observedHash = 0;
+		for (int w = 0; w < shot.length; w++) {
+			for (long bits = shot[w]; bits != 0; bits &= bits - 1) {
+				int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+				int state = BitBoard.get(sunk, i) ? SUNK : BitBoard.get(occupied, i) ? HIT : MISS;
+				observedHash ^= zobristKey(i, state);
+			}
+		}
+	}
+
+	/**
+	 * Returns the random key of block i in the given state. The keys are derived
+	 * from the block and state alone, so equal boards hash equally across grids
+	 * and runs.
+	 * 
+	 * @param i     the index of the block
+	 * @param state the observed state of the block
+	 * @return the key
+	 */
+	private static long zobristKey(int i, int state) {
+		long z = (i * 4L + state) * 0x9E3779B97F4A7C15L; // the finalizer of SplitMix64
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	private int index(int x, int y) {
+		return BitBoard.index(gridsize, x, y);
+	}
+
+	private boolean isWater(int x, int y) {
+		return types[index(x, y)] == WATER;
+	}
+
+	/**
+	 * Returns the distance between the indices of neighbouring blocks of the boat
+	 * containing the block cell: gridsize if the boat lies along the x axis, 1 if
+	 * it lies along the y axis. Boats never touch each other, so the neighbours of
+	 * cell tell the direction. Shared with {@link GameStore}, which reads the
+	 * blocks from its slots.
+	 * 
+	 * @param gridsize the side-length of the grid
+	 * @param cell     the index of a block of the boat as described in
+	 *                 {@link BitBoard}
+	 * @param water    tells if the block with the given index is water
+	 * @return the step between the blocks of the boat
+	 */
+	static int boatStep(int gridsize, int cell, IntPredicate water) {
+		int x = cell / gridsize;
+		if ((x > 0 && !water.test(cell - gridsize)) || (x < gridsize - 1 && !water.test(cell + gridsize)))
+			return gridsize;
+		return 1;
+	}
+
+	/**
+	 * Returns the index of the first block, i.e. the highest or leftmost one, of
+	 * the boat containing the block cell.
+	 * 
+	 * @param gridsize the side-length of the grid
+	 * @param cell     the index of a block of the boat as described in
+	 *                 {@link BitBoard}
+	 * @param step     the step between the blocks of the boat, see
+	 *                 {@link #boatStep(int, int, IntPredicate)}
+	 * @param water    tells if the block with the given index is water
+	 * @return the index of the first block
+	 */
+	static int boatStart(int gridsize, int cell, int step, IntPredicate water) {
+		int start = cell;
+		// stop at the edge of the grid or at the water in front of the boat
+		while ((step == 1 ? start % gridsize : start / gridsize) > 0 && !water.test(start - step)) {
+			start -= step;
+		}
+		return start;
 	}
 
 	/**
@@ -78,23 +276,17 @@ public class Grid {
 	 * 
 	 * @param x first coordinate of the block to check
 	 * @param y second coordinate of the block to check
-	 * @return an array of coordinates, each one corresponding to one block of the
-	 *         boat.
-	 */
-	private Coordinate[] getBoat(int x, int y) {
-		Coordinate[] res = new Coordinate[data[x][y].getType().length];
-		int dir;
-		// if the boat is horizontal dir is 1
-		if ((x < data.length - 1 && !data[x + 1][y].isType(BlockType.WATER))
-				|| (x > 0 && !data[x - 1][y].isType(BlockType.WATER)))
-			dir = 1;
-		else
-			dir = 0;
-
-		Coordinate start = findStart(dir, x, y); // find the highest/leftest block of the boat
-
-		for (int i = 0; i < res.length; i++) { // create the coordinates
-			res[i] = new Coordinate(start.getX() + i * dir, start.getY() + i * (1 - dir));
+	 * @return an array of block indices, each one corresponding to one block of
+	 *         the boat.
+	 */
+	private int[] getBoat(int x, int y) {
+		int cell = index(x, y);
+		int[] res = new int[TYPES[types[cell]].length];
+		int step = boatStep(gridsize, cell, water);
+		int start = boatStart(gridsize, cell, step, water);
+
+		for (int i = 0; i < res.length; i++) { // create the indices
+			res[i] = start + i * step;
 		}
 
 		return res;
@@ -110,140 +302,187 @@ public class Grid {
 	 * @return true if the boat was sunk, false otherwise.
 	 */
 	private boolean checkSunk(int x, int y) {
-		if (data[x][y].isType(BlockType.WATER))
+		if (isWater(x, y))
 			return false;
 
-		Coordinate[] boat = getBoat(x, y);
-		for (Coordinate c : boat) {
-			if (!data[c.getX()][c.getY()].isShot())
+		int[] boat = getBoat(x, y);
+		for (int i : boat) {
+			if (!BitBoard.get(shot, i))
 				return false;
 		}
 
-		for (Coordinate c : boat) {
-			data[c.getX()][c.getY()].setSymbol(data[c.getX()][c.getY()].getType().symbol);
+		for (int i : boat) {
+			BitBoard.set(sunk, i);
+			observedHash ^= zobristKey(i, HIT) ^ zobristKey(i, SUNK);
 		}
+		sunkCount++;
 
 		return true;
 	}
 
 	/**
-	 * Shoots the block at coordinate c. If c can't be shot the method throws an
-	 * assertion error.
+	 * Shoots the block at coordinate c.
 	 * 
 	 * @param c the coordinate to shoot.
 	 * @return true if the boat was sunk, false otherwise.
+	 * @throws IllegalArgumentException if c was already shot, the grid is left
+	 *                                  unchanged.
 	 */
 	public boolean shoot(Coordinate c) {
 		int x = c.getX();
 		int y = c.getY();
+		int i = index(x, y);
 
-		assert !data[x][y].isShot();
+		if (BitBoard.get(shot, i))
+			throw new IllegalArgumentException("Already shot: " + c);
 
-		data[x][y].shoot();
-		data[x][y].setSymbol(data[x][y].isType(BlockType.WATER) ? SYMBOL_MISS : SYMBOL_HIT);
+		BitBoard.set(shot, i);
+		removeLegal(i);
 
-		if (!data[x][y].isType(BlockType.WATER)) {
+		if (BitBoard.get(occupied, i)) {
 			hitCount++;
+			observedHash ^= zobristKey(i, HIT);
+		} else {
+			observedHash ^= zobristKey(i, MISS);
 		}
 
 		return checkSunk(x, y);
 	}
 
 	/**
-	 * Checks if Coordinate c was not shot already.
+	 * Shoots all given blocks at once. The blocks are given as indices as described
+	 * in {@link BitBoard}, duplicates are fired only once.
 	 * 
-	 * @param c the coordinate to check
-	 * @return true if c wasn't shot before
-	 * @throws IllegalBoatSpecException if the coordinates are outside the grid.
+	 * @param cells the indices of the blocks to shoot.
+	 * @return the masks of the hit blocks and of the boats sunk by this salvo.
+	 * @throws IndexOutOfBoundsException if a block is outside the grid.
+	 * @throws IllegalArgumentException  if a block was already shot, the grid is
+	 *                                   left unchanged.
 	 */
-	public boolean isShootable(Coordinate c) throws IllegalBoatSpecException {
-		int x = c.getX();
-		int y = c.getY();
-		if (x < 0 || x >= data.length || y < 0 || y >= data[0].length)
-			throw new IllegalBoatSpecException();
-		return !data[x][y].isShot();
-	}
-
-	/**
-	 * Checks if the blocks to the left and right (below and above if {@code dir=0})
-	 * of the Block at x y are of type Water.
-	 * 
-	 * @param x   the x coordinate
-	 * @param y   the y coordinate
-	 * @param dir 0 if the boat is vertical 1 otherwise
-	 * @return true if both blocks are water, false otherwise
-	 */
-	private boolean isFree(int x, int y, int dir) {
-		boolean res = true;
-		if (dir == 0) { // boat is vertical
-			if (x > 0) // don't check left, if boat is at left edge
-				res = res && data[x - 1][y].isType(BlockType.WATER);
-			if (x < data.length - 1) // check right
-				res = res && data[x + 1][y].isType(BlockType.WATER);
-		} else { // boat is horizontal
-			if (y > 0)
-				res = res && data[x][y - 1].isType(BlockType.WATER); // check above
-			if (y + 1 < data[0].length)
-				res = res && data[x][y + 1].isType(BlockType.WATER); // check below
+	public SalvoResult shootAll(int[] cells) {
+		long[] fired = BitBoard.of(gridsize, cells);
+		for (int w = 0; w < fired.length; w++) {
+			if ((fired[w] & shot[w]) != 0) {
+				int i = (w << 6) + Long.numberOfTrailingZeros(fired[w] & shot[w]);
+				throw new IllegalArgumentException("Already shot: " + new Coordinate(i / gridsize, i % gridsize));
+			}
 		}
-		return res;
-	}
 
-	// checks 3 blocks left and right of boat to insert. returns true if they are
-	// water
-	private boolean checkLeftRight(int x_start, int y_start, int length) {
-		boolean rightFree = true, leftFree = true;
-		if (x_start > 0) { // check blocks left of 'leftest'
-			leftFree = data[x_start - 1][y_start].isType(BlockType.WATER);
-			if (y_start > 0)
-				leftFree = leftFree && data[x_start - 1][y_start - 1].isType(BlockType.WATER);
-			if (y_start + length < data[0].length - 1)
-				leftFree = leftFree && data[x_start - 1][y_start + 1].isType(BlockType.WATER);
+		long[] hits = BitBoard.empty(gridsize);
+		long[] sunkBefore = sunk.clone();
+		for (int w = 0; w < fired.length; w++) {
+			hits[w] = fired[w] & occupied[w];
+			shot[w] |= fired[w];
+			hitCount += Long.bitCount(hits[w]);
+			for (long bits = fired[w]; bits != 0; bits &= bits - 1) {
+				int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+				removeLegal(i);
+				observedHash ^= zobristKey(i, BitBoard.get(occupied, i) ? HIT : MISS);
+			}
+		}
+
+		for (int w = 0; w < hits.length; w++) {
+			for (long bits = hits[w]; bits != 0; bits &= bits - 1) {
+				int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+				if (!BitBoard.get(sunk, i)) // each boat only needs to be checked once
+					checkSunk(i / gridsize, i % gridsize);
+			}
 		}
 
-		if (x_start + length < data.length - 1) { // check blocks right of 'rightest'
-			rightFree = data[x_start + length][y_start].isType(BlockType.WATER);
-			if (y_start > 0)
-				rightFree = rightFree && data[x_start + length][y_start - 1].isType(BlockType.WATER);
-			if (y_start + length < data[0].length - 1)
-				rightFree = rightFree && data[x_start + length][y_start + 1].isType(BlockType.WATER);
+		long[] newlySunk = BitBoard.empty(gridsize);
+		for (int w = 0; w < newlySunk.length; w++) {
+			newlySunk[w] = sunk[w] & ~sunkBefore[w];
 		}
 
-		return rightFree && leftFree;
+		return new SalvoResult(hits, newlySunk);
 	}
 
-	// checks 3 blocks below and above the boat to insert. returns true if they are
-	// water
-	private boolean checkBelowAbove(int x_start, int y_start, int length) {
-		boolean aboveFree = true, belowFree = true;
-		if (y_start > 0) { // check blocks below lowest
-			belowFree = data[x_start][y_start - 1].isType(BlockType.WATER);
-			if (x_start > 0)
-				belowFree = belowFree && data[x_start - 1][y_start - 1].isType(BlockType.WATER);
-			if (x_start + length < data.length - 1)
-				belowFree = belowFree && data[x_start + 1][y_start - 1].isType(BlockType.WATER);
+	/**
+	 * Removes all blocks that were already shot from the given mask.
+	 * 
+	 * @param mask the blocks to filter as described in {@link BitBoard}
+	 * @return a new mask containing only the blocks of {@code mask} that can be
+	 *         shot
+	 */
+	public long[] filterShootable(long[] mask) {
+		long[] res = BitBoard.full(gridsize);
+		for (int w = 0; w < res.length; w++) {
+			res[w] &= mask[w] & ~shot[w];
 		}
+		return res;
+	}
 
-		if (y_start + length < data[0].length - 1) { // check blocks above highest
-			aboveFree = data[x_start][y_start + length].isType(BlockType.WATER);
-			if (x_start > 0)
-				aboveFree = aboveFree && data[x_start - 1][y_start + length].isType(BlockType.WATER);
-			if (x_start + length < data.length - 1)
-				aboveFree = aboveFree && data[x_start + 1][y_start + length].isType(BlockType.WATER);
-		}
+	/**
+	 * Returns a hash of what the opponent sees of this grid, i.e. which blocks were
+	 * missed, hit or belong to a sunk boat. It is the xor of one random key per
+	 * shot block and its state, updated in constant time per shot. Grids of the
+	 * same size with the same observed state have the same hash, whatever their
+	 * boats are.
+	 * 
+	 * @return the Zobrist hash of the observed state
+	 */
+	public long getObservedHash() {
+		return observedHash;
+	}
+
+	/**
+	 * Returns the number of blocks that weren't shot yet.
+	 * 
+	 * @return the number of legal shots
+	 */
+	public int legalShotCount() {
+		return legalCount;
+	}
+
+	/**
+	 * Returns a uniformly chosen block that wasn't shot yet, in constant time.
+	 * 
+	 * @param rng the source of randomness
+	 * @return the coordinate of a shootable block
+	 * @throws IllegalStateException if all blocks were shot
+	 */
+	public Coordinate randomLegalShot(Random rng) {
+		if (legalCount == 0)
+			throw new IllegalStateException("All blocks were shot");
 
-		return aboveFree && belowFree;
+		int i = legal[rng.nextInt(legalCount)];
+		return new Coordinate(i / gridsize, i % gridsize);
+	}
+
+	/**
+	 * Checks if Coordinate c was not shot already.
+	 * 
+	 * @param c the coordinate to check
+	 * @return true if c wasn't shot before
+	 * @throws IllegalBoatSpecException if the coordinates are outside the grid.
+	 */
+	public boolean isShootable(Coordinate c) throws IllegalBoatSpecException {
+		if (!isInside(c))
+			throw new IllegalBoatSpecException();
+		return !BitBoard.get(shot, index(c.getX(), c.getY()));
+	}
+
+	/**
+	 * Returns true if Coordinate c is a block of this grid.
+	 * 
+	 * @param c the coordinate to check
+	 * @return true if c is inside the grid
+	 */
+	public boolean isInside(Coordinate c) {
+		int x = c.getX();
+		int y = c.getY();
+		return x >= 0 && x < gridsize && y >= 0 && y < gridsize;
 	}
 
 	/**
 	 * Adds a boat of type {@code type} to the grid. It starts at position
-	 * {@code from} and ends at position {@code to}. This method checks for the
-	 * right amount of distance to other boats.
+	 * {@code from} and ends at position {@code to}. This method checks that no
+	 * other boat is inside the boat's exclusion halo, i.e. the boat and all blocks
+	 * next to it, including diagonally.
 	 * 
 	 * <p>
 	 * If the two coordinates do not form a straight line, the function behaves
-	 * undefined. If {@code from} or {@code to} are outside the grid, the function
-	 * throws an {@link IndexOutOfBoundsException}.
+	 * undefined.
 	 * 
 	 * @param from         the starting coordinate, has to form a straight line with
 	 *                     {@code to}.
@@ -254,39 +493,61 @@ public class Grid {
 	 * @param playerNumber the player this grid belongs to. Used to determine the
 	 *                     boats symbol to display.
 	 * @return true if the boat could be placed, false otherwise.
-	 * @throws BoatCollisionException if the coordinates intersect or are too close
-	 *                                to an existing boat.
+	 * @throws BoatCollisionException   if the coordinates intersect or are too
+	 *                                  close to an existing boat.
+	 * @throws IllegalBoatSpecException if {@code from} or {@code to} are outside
+	 *                                  the grid.
 	 */
 	public void addBoat(Coordinate from, Coordinate to, BlockType type, int playerNumber)
-			throws BoatCollisionException {
-		int dir; // 0 if boat vertical, otherwise 1
-		int length = from.getDistance(to) + 1;
-		int x_start = Math.min(from.getX(), to.getX());
-		int y_start = Math.min(from.getY(), to.getY());
-		if (from.getX() - to.getX() == 0) {
-			dir = 0;
-			if (!checkBelowAbove(x_start, y_start, length)) {
-				throw new BoatCollisionException(); // if direction is vertical, check blocks below and above boat
-			}
-		} else {
-			dir = 1;
-			if (!checkLeftRight(x_start, y_start, length)) {
-				throw new BoatCollisionException(); // if direction is horizontal, check blocks right and left of boat
-			}
+			throws BoatCollisionException, IllegalBoatSpecException {
+		if (!isInside(from) || !isInside(to))
+			throw new IllegalBoatSpecException();
+
+		int x0 = Math.min(from.getX(), to.getX()), x1 = Math.max(from.getX(), to.getX());
+		int y0 = Math.min(from.getY(), to.getY()), y1 = Math.max(from.getY(), to.getY());
+
+		if (!canAddBoat(x0, y0, x1, y1)) {
+			throw new BoatCollisionException(); // another boat is inside or next to the boat
 		}
 
-		for (int i = 0; i < length; i++) {
-			if (!isFree(x_start + i * dir, y_start + i * (1 - dir), dir)) {
-				throw new BoatCollisionException(); // check each block left/right (above/below respectively)
-			}
+		if (layoutShared) { // copy on write
+			types = types.clone();
+			occupied = occupied.clone();
+			revealed = revealed.clone();
+			layoutShared = false;
 		}
 
-		for (int i = 0; i < length; i++) {
-			data[x_start + i * dir][y_start + i * (1 - dir)].setType(type);
-			data[x_start + i * dir][y_start + i * (1 - dir)].setSymbol(playerNumber == 0 ? type.symbol : ' ');
+		for (int x = x0; x <= x1; x++) {
+			for (int y = y0; y <= y1; y++) {
+				int cell = index(x, y);
+				types[cell] = (byte) type.ordinal();
+				BitBoard.set(occupied, cell);
+				if (playerNumber == 0)
+					BitBoard.set(revealed, cell);
+			}
 		}
 	}
 
+	/**
+	 * Returns true if a boat covering the blocks from {@code (x0, y0)} to
+	 * {@code (x1, y1)} can be added, i.e. it is inside the grid and no other boat
+	 * is inside its exclusion halo. Unlike {@link #addBoat} this doesn't throw or
+	 * allocate, so it is cheap to try many placements.
+	 * 
+	 * @param x0 the smallest x coordinate of the boat
+	 * @param y0 the smallest y coordinate of the boat
+	 * @param x1 the largest x coordinate of the boat
+	 * @param y1 the largest y coordinate of the boat
+	 * @return true if the boat fits
+	 */
+	public boolean canAddBoat(int x0, int y0, int x1, int y1) {
+		if (x0 < 0 || y0 < 0 || x1 >= gridsize || y1 >= gridsize)
+			return false;
+
+		// the boat and its 8-neighbourhood
+		return !BitBoard.intersectsRect(occupied, gridsize, x0 - 1, y0 - 1, x1 + 1, y1 + 1);
+	}
+
 	/**
 	 * Returns the type of the block at position c.
 	 * 
@@ -294,7 +555,42 @@ public class Grid {
 	 * @return the type at coordinate c as a BlockType
 	 */
 	public BlockType getTypeAt(Coordinate c) {
-		return data[c.getX()][c.getY()].getType();
+		return TYPES[types[index(c.getX(), c.getY())]];
+	}
+
+	/**
+	 * Returns the symbol of the Block at position c as seen by the opponent, i.e.
+	 * only shot blocks and sunk boats are shown.
+	 * 
+	 * @param c the coordinate of the block to get the symbol of
+	 * @return the public symbol at coordinate c as a char
+	 */
+	public char getPublicSymbolAt(Coordinate c) {
+		int i = index(c.getX(), c.getY());
+		if (BitBoard.get(sunk, i))
+			return TYPES[types[i]].symbol;
+		if (BitBoard.get(shot, i))
+			return BitBoard.get(occupied, i) ? SYMBOL_HIT : SYMBOL_MISS;
+		return ' ';
+	}
+
+	/**
+	 * Returns the coordinates of all blocks of the boat at position c. If the
+	 * block at c is water, an empty array is returned.
+	 * 
+	 * @param c the coordinate of a block of the boat
+	 * @return the coordinates of the boat's blocks
+	 */
+	public Coordinate[] getBoatAt(Coordinate c) {
+		if (isWater(c.getX(), c.getY()))
+			return new Coordinate[0];
+
+		int[] boat = getBoat(c.getX(), c.getY());
+		Coordinate[] res = new Coordinate[boat.length];
+		for (int i = 0; i < boat.length; i++) {
+			res[i] = new Coordinate(boat[i] / gridsize, boat[i] % gridsize);
+		}
+		return res;
 	}
 
 	/**
@@ -304,7 +600,12 @@ public class Grid {
 	 * @return the symbol at coordinate c as a char
 	 */
 	public char getSymbolAt(Coordinate c) {
-		return data[c.getX()][c.getY()].getSymbol();
+		int i = index(c.getX(), c.getY());
+		if (BitBoard.get(sunk, i) || !BitBoard.get(shot, i) && BitBoard.get(revealed, i))
+			return TYPES[types[i]].symbol;
+		if (BitBoard.get(shot, i))
+			return BitBoard.get(occupied, i) ? SYMBOL_HIT : SYMBOL_MISS;
+		return ' ';
 	}
 
 	/**
@@ -313,7 +614,7 @@ public class Grid {
 	 * @return the side-length of the grid
 	 */
 	public int getGridsize() {
-		return data.length;
+		return gridsize;
 	}
 
 	/**
@@ -325,4 +626,163 @@ public class Grid {
 		return hitCount;
 	}
 
+	/**
+	 * Returns the number of boats that are not sunk yet.
+	 * 
+	 * @return the number of remaining boats
+	 */
+	public int getRemainingBoats() {
+		return BOAT_COUNT - sunkCount;
+	}
+
+	/**
+	 * Returns the number of boats of every length that are not sunk yet, indexed by
+	 * length. The opponent knows this, because the type of a sunk boat is shown.
+	 * 
+	 * @return the remaining boats per length
+	 */
+	int[] getRemainingBoatsPerLength() {
+		int[] res = PlacementScorer.fleet();
+		int[] sunkBlocks = new int[res.length];
+		for (int w = 0; w < sunk.length; w++) {
+			for (long bits = sunk[w]; bits != 0; bits &= bits - 1) {
+				sunkBlocks[TYPES[types[(w << 6) + Long.numberOfTrailingZeros(bits)]].length]++;
+			}
+		}
+		for (int l = 1; l < res.length; l++) {
+			res[l] -= sunkBlocks[l] / l;
+		}
+		return res;
+	}
+
+	/**
+	 * Returns the blocks the opponent knows can't hold a boat: the missed blocks,
+	 * the sunk boats and the blocks next to them.
+	 * 
+	 * @return a new mask of the blocked blocks
+	 */
+	long[] getObservedBlocked() {
+		long[] res = BitBoard.empty(gridsize);
+		for (int w = 0; w < res.length; w++) {
+			for (long bits = sunk[w]; bits != 0; bits &= bits - 1) {
+				int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+				int x = i / gridsize, y = i % gridsize;
+				BitBoard.setRect(res, gridsize, x - 1, y - 1, x + 1, y + 1);
+			}
+		}
+		for (int w = 0; w < res.length; w++) {
+			res[w] |= shot[w] & ~occupied[w];
+		}
+		return res;
+	}
+
+	/**
+	 * Returns the number of bytes {@link #writeTo(ByteBuffer)} writes.
+	 * 
+	 * @return the size of this grid in a snapshot
+	 */
+	int getSnapshotSize() {
+		return getSnapshotSize(gridsize);
+	}
+
+	/**
+	 * Returns the number of bytes {@link #writeTo(ByteBuffer)} writes for a grid of
+	 * the given size.
+	 * 
+	 * @param gridsize the side-length of the grid
+	 * @return the size of a grid in a snapshot
+	 */
+	static int getSnapshotSize(int gridsize) {
+		return 2 + 1 + gridsize * gridsize + 3 * 8 * BitBoard.words(gridsize);
+	}
+
+	/**
+	 * Writes this grid to buf, so it can be restored with
+	 * {@link #readFrom(ByteBuffer)}.
+	 * 
+	 * @param buf the buffer to write to
+	 */
+	void writeTo(ByteBuffer buf) {
+		buf.putShort((short) gridsize);
+		buf.put((byte) sunkCount);
+		buf.put(types);
+		for (long[] mask : new long[][] { shot, revealed, sunk }) {
+			for (long w : mask) {
+				buf.putLong(w);
+			}
+		}
+	}
+
+	/**
+	 * Reads a grid written by {@link #writeTo(ByteBuffer)}. The grid is checked
+	 * before it is returned, so a corrupt snapshot can't restore a grid whose
+	 * masks contradict its layout.
+	 * 
+	 * @param buf the buffer to read from
+	 * @return the restored grid
+	 * @throws IOException if the size or a block type is out of range, a mask has
+	 *                     bits beyond the last block, a boat is broken or the
+	 *                     sunk boats don't match the blocks that were shot
+	 */
+	static Grid readFrom(ByteBuffer buf) throws IOException {
+		int gridsize = buf.getShort();
+		if (gridsize <= 0 || getSnapshotSize(gridsize) - 2 > buf.remaining())
+			throw new IOException("Corrupt grid: size " + gridsize);
+		Grid g = new Grid(gridsize);
+		int sunkCount = buf.get();
+		buf.get(g.types);
+		long[] full = BitBoard.full(gridsize);
+		for (long[] mask : new long[][] { g.shot, g.revealed, g.sunk }) {
+			for (int w = 0; w < mask.length; w++) {
+				mask[w] = buf.getLong();
+				if ((mask[w] & ~full[w]) != 0)
+					throw new IOException("Corrupt grid: mask has bits beyond block " + (g.types.length - 1));
+			}
+		}
+
+		for (int i = 0; i < g.types.length; i++) {
+			if (g.types[i] < 0 || g.types[i] >= TYPES.length)
+				throw new IOException("Corrupt grid: unknown type " + g.types[i] + " at block " + i);
+			if (g.types[i] != WATER)
+				BitBoard.set(g.occupied, i);
+		}
+
+		// the sunk boats follow from the layout and the blocks shot
+		long[] sunk = BitBoard.empty(gridsize);
+		int boats = 0;
+		for (int i = 0; i < g.types.length; i++) {
+			if (g.types[i] == WATER)
+				continue;
+			int step = boatStep(gridsize, i, g.water);
+			if (boatStart(gridsize, i, step, g.water) != i)
+				continue;
+			int length = TYPES[g.types[i]].length;
+			if ((step == 1 ? i % gridsize : i / gridsize) + length > gridsize)
+				throw new IOException("Corrupt grid: boat at block " + i + " leaves the grid");
+			boolean shot = true;
+			for (int k = 0; k < length; k++) {
+				if (g.types[i + k * step] != g.types[i])
+					throw new IOException("Corrupt grid: broken boat at block " + i);
+				shot &= BitBoard.get(g.shot, i + k * step);
+			}
+			if (shot) {
+				boats++;
+				for (int k = 0; k < length; k++) {
+					BitBoard.set(sunk, i + k * step);
+				}
+			}
+		}
+		if (boats != sunkCount || !Arrays.equals(sunk, g.sunk))
+			throw new IOException("Corrupt grid: " + sunkCount + " boats sunk, but " + boats + " were shot");
+		g.sunkCount = sunkCount;
+
+		for (int w = 0; w < g.shot.length; w++) {
+			g.hitCount += Long.bitCount(g.shot[w] & g.occupied[w]);
+		}
+		g.resetLegal();
+		g.resetObservedHash();
+
+		return g;
+	}
+
 }
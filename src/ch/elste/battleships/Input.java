@@ -11,11 +11,18 @@ public class Input {
 	private Scanner in;
 
 	private static final String wrongFormat = "Please use the following format for a coordinate: A1";
+	private static final Pattern COORD = Pattern.compile("[a-zA-Z][0-9]+"); // char followed by int
 
 	public Input(InputStream is) {
 		in = new Scanner(is);
 	}
 
+	/**
+	 * Used by subclasses which don't read from an InputStream.
+	 */
+	protected Input() {
+	}
+
 	// advances the scanner and if no more inputs could be read, start reading from
 	// standard input.
 	private String advanceScanner() {
@@ -31,28 +38,26 @@ public class Input {
 	}
 
 	/**
-	 * Finds the (index+1)th coordinate in the String {@code line}. If it contains
-	 * no coordinates, the empty string is returned.
+	 * Reads the next line and returns the first n coordinates in it. Subclasses
+	 * may read from other sources than a {@link Scanner}.
 	 * 
-	 * @param line  the String to scan
-	 * @param index specifies which coordinate in the string should be returned
-	 * @return a string with a char at index 0 followed by an int, or the empty
-	 *         string
+	 * @param n the number of coordinates to read
+	 * @return an array of exactly n coordinates, or null if the line contains
+	 *         fewer coordinates
 	 */
-	private String readCoord(String line, int index) {
-		String coordRegex = "[a-zA-Z][0-9]+"; // regular expr for char followed by int
-		Pattern p = Pattern.compile(coordRegex);
-		Matcher m = p.matcher(line);
+	protected Coordinate[] readCoordinates(int n) {
+		Matcher m = COORD.matcher(advanceScanner());
+		Coordinate[] res = new Coordinate[n];
 
-		for (int i = 0; i < index; i++) {
-			m.find(); // skip the coordinates before index
-		}
+		for (int i = 0; i < n; i++) {
+			if (!m.find())
+				return null;
 
-		if (m.find()) {
-			return m.group();
-		} else {
-			return "";
+			String s = m.group();
+			res[i] = new Coordinate(s.charAt(0), Integer.parseInt(s.substring(1)));
 		}
+
+		return res;
 	}
 
 	/**
@@ -64,20 +69,13 @@ public class Input {
 	public Coordinate[] getCoordinatePair(String display) {
 		Output.println(display); // show display
 
-		String line = advanceScanner();
-		String first = readCoord(line, 0);
-		String second = readCoord(line, 1);
-
-		while (first == "" || second == "") { // do until two correct coords are given
+		Coordinate[] cs = readCoordinates(2);
+		while (cs == null) { // do until two correct coords are given
 			Output.println(wrongFormat);
-			line = advanceScanner();
-			first = readCoord(line, 0);
-			second = readCoord(line, 1);
+			cs = readCoordinates(2);
 		}
 
-		Coordinate c1 = new Coordinate(first.charAt(0), Integer.parseInt(first.substring(1)));
-		Coordinate c2 = new Coordinate(second.charAt(0), Integer.parseInt(second.substring(1)));
-		return new Coordinate[] { c1, c2 };
+		return cs;
 	}
 
 	/**
@@ -88,15 +86,13 @@ public class Input {
 	 */
 	public Coordinate getCoordinate(String display) {
 		Output.println(display);
-		String line = advanceScanner();
-		String s = readCoord(line, 0);
 
-		while (s == "") {
+		Coordinate[] cs = readCoordinates(1);
+		while (cs == null) {
 			Output.println(wrongFormat);
-			line = advanceScanner();
-			s = readCoord(line, 0);
+			cs = readCoordinates(1);
 		}
 
-		return new Coordinate(s.charAt(0), Integer.parseInt(s.substring(1)));
+		return cs[0];
 	}
 }
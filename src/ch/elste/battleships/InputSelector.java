@@ -0,0 +1,104 @@
+package ch.elste.battleships;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import ch.elste.battleships.LineReader.LineHandler;
+
+/**
+ * Reads lines from many non-blocking channels on a single thread. Channels are
+ * added with {@link #register(SelectableChannel, LineHandler)}, which can be
+ * called from any thread, while {@link #run()} runs on the selector thread. All
+ * connections share one {@link BufferPool}.
+ *
+ * @author Dillon Elste
+ *
+ */
+public class InputSelector implements Runnable, Closeable {
+	private Selector selector;
+	private BufferPool pool;
+	private ConcurrentLinkedQueue<LineReader> pending;
+
+	public InputSelector() throws IOException {
+		this.selector = Selector.open();
+		this.pool = new BufferPool(1 << 12, 16);
+		this.pending = new ConcurrentLinkedQueue<>();
+	}
+
+	/**
+	 * Starts reading lines from channel. The channel is switched to non-blocking
+	 * mode and is closed once its end is reached.
+	 *
+	 * @param <C>     a selectable, readable channel, e.g. a SocketChannel
+	 * @param channel the channel to read from
+	 * @param handler receives the lines on the selector thread, so it must not
+	 *                block
+	 * @throws IOException if the channel can't be switched to non-blocking mode
+	 */
+	public <C extends SelectableChannel & ReadableByteChannel> void register(C channel, LineHandler handler)
+			throws IOException {
+		channel.configureBlocking(false);
+		pending.add(new LineReader(channel, pool, handler));
+		selector.wakeup();
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (selector.isOpen()) {
+				selector.select();
+				registerPending();
+
+				Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+				while (it.hasNext()) {
+					SelectionKey key = it.next();
+					it.remove();
+					read(key);
+				}
+			}
+		} catch (ClosedSelectorException e) {
+			// closed while selecting
+		} catch (IOException e) {
+			throw new java.io.UncheckedIOException(e);
+		}
+	}
+
+	private void registerPending() throws IOException {
+		LineReader r;
+		while ((r = pending.poll()) != null) {
+			((SelectableChannel) r.getChannel()).register(selector, SelectionKey.OP_READ, r);
+		}
+	}
+
+	private void read(SelectionKey key) {
+		LineReader r = (LineReader) key.attachment();
+		try {
+			if (r.read() >= 0)
+				return;
+		} catch (IOException e) {
+			// treat like a closed connection
+		}
+
+		key.cancel();
+		try {
+			key.channel().close();
+		} catch (IOException e) {
+			// already broken
+		}
+	}
+
+	/**
+	 * Stops the selector thread. The registered channels are not closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		selector.close();
+	}
+}
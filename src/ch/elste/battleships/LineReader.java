@@ -0,0 +1,97 @@
+package ch.elste.battleships;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Assembles lines from the bytes read from a channel. A line may arrive in many
+ * partial reads, the bytes read so far are kept until its end arrives. Works
+ * with blocking and non-blocking channels.
+ *
+ * @author Dillon Elste
+ *
+ */
+public class LineReader {
+	private static final int MAX_LINE = 1 << 12;
+
+	/**
+	 * Receives the lines read by a {@link LineReader}.
+	 */
+	public static interface LineHandler {
+
+		/**
+		 * Called for each complete line. The array is reused for the next line.
+		 *
+		 * @param line the bytes of the line without the line terminator
+		 * @param len  the number of valid bytes in line
+		 */
+		public void line(byte[] line, int len);
+
+		/**
+		 * Called once the end of the channel was reached.
+		 */
+		public default void closed() {
+		}
+	}
+
+	private ReadableByteChannel channel;
+	private BufferPool pool;
+	private LineHandler handler;
+	private byte[] line;
+	private int len;
+
+	public LineReader(ReadableByteChannel channel, BufferPool pool, LineHandler handler) {
+		this.channel = channel;
+		this.pool = pool;
+		this.handler = handler;
+		this.line = new byte[64];
+		this.len = 0;
+	}
+
+	public ReadableByteChannel getChannel() {
+		return channel;
+	}
+
+	/**
+	 * Reads the bytes available in the channel and passes every completed line to
+	 * the handler. Lines longer than {@value #MAX_LINE} bytes are truncated.
+	 *
+	 * @return the number of bytes read, or -1 if the end of the channel was
+	 *         reached
+	 * @throws IOException if reading fails
+	 */
+	public int read() throws IOException {
+		ByteBuffer buf = pool.acquire();
+		try {
+			int n = channel.read(buf);
+			if (n < 0) {
+				if (len > 0) { // the last line has no terminator
+					handler.line(line, len);
+					len = 0;
+				}
+				handler.closed();
+				return -1;
+			}
+
+			buf.flip();
+			while (buf.hasRemaining()) {
+				byte b = buf.get();
+				if (b == '\n') {
+					if (len > 0 && line[len - 1] == '\r')
+						len--;
+					handler.line(line, len);
+					len = 0;
+				} else if (len < MAX_LINE) {
+					if (len == line.length)
+						line = Arrays.copyOf(line, Math.min(2 * len, MAX_LINE));
+					line[len++] = b;
+				}
+			}
+			return n;
+		} finally {
+			pool.release(buf);
+		}
+	}
+}
@@ -0,0 +1,207 @@
+package ch.elste.battleships;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import ch.elste.battleships.Block.BlockType;
+
+/**
+ * A precomputed order of the first shots of a cpu player. The book is stored in
+ * a compact file, which is memory-mapped by {@link #load(Path)}, so looking up
+ * the next shot costs a read from the mapped table.
+ *
+ * <p>
+ * The file starts with {@link #MAGIC}, {@link #VERSION}, the grid size and the
+ * number of shots as shorts, followed by the block index of each shot as short.
+ *
+ * @author Dillon Elste
+ *
+ */
+public class OpeningBook {
+	public static final int MAGIC = 0x42534f42; // "BSOB"
+	public static final short VERSION = 1;
+
+	private static final int HEADER_SIZE = 4 + 2 + 2 + 2;
+
+	private ByteBuffer table;
+	private int gridsize;
+	private int size;
+
+	private OpeningBook(ByteBuffer table, int gridsize, int size) {
+		this.table = table;
+		this.gridsize = gridsize;
+		this.size = size;
+	}
+
+	/**
+	 * Computes a book for the standard fleet. Only blocks of one checkerboard
+	 * color are shot, since every boat is at least two blocks long and therefore
+	 * covers a block of each color. They are ordered by the number of boat
+	 * placements covering them on an empty grid, so the most likely blocks are
+	 * shot first. Ties are broken randomly.
+	 *
+	 * @param gridsize the side-length of the grid
+	 * @param length   the maximum number of shots in the book
+	 * @param rng      breaks ties between equally likely blocks
+	 * @return the generated book
+	 */
+	public static OpeningBook generate(int gridsize, int length, Random rng) {
+		int[] density = new int[gridsize * gridsize];
+		for (int t = 0; t < 4; t++) {
+			int len = BlockType.getTypeFromIndex(t).length;
+			for (int x = 0; x < gridsize; x++) {
+				for (int y = 0; y + len <= gridsize; y++) {
+					for (int i = 0; i < len; i++) {
+						density[BitBoard.index(gridsize, x, y + i)]++; // one orientation
+						density[BitBoard.index(gridsize, y + i, x)]++; // and the other
+					}
+				}
+			}
+		}
+
+		int parity = rng.nextInt(2);
+		int count = 0;
+		int[] cells = new int[(density.length + 1) / 2];
+		for (int x = 0; x < gridsize; x++) {
+			for (int y = 0; y < gridsize; y++) {
+				if ((x + y) % 2 == parity)
+					cells[count++] = BitBoard.index(gridsize, x, y);
+			}
+		}
+
+		// shuffle, then stable sort by density, so ties end up in random order
+		for (int i = count - 1; i > 0; i--) {
+			int j = rng.nextInt(i + 1);
+			int tmp = cells[i];
+			cells[i] = cells[j];
+			cells[j] = tmp;
+		}
+		for (int i = 1; i < count; i++) { // insertion sort, the book is small
+			int c = cells[i];
+			int j = i - 1;
+			for (; j >= 0 && density[cells[j]] < density[c]; j--) {
+				cells[j + 1] = cells[j];
+			}
+			cells[j + 1] = c;
+		}
+
+		return fromOrder(gridsize, cells, Math.min(count, length));
+	}
+
+	/**
+	 * Creates a book shooting the first {@code length} blocks of order.
+	 *
+	 * @param gridsize the side-length of the grid
+	 * @param order    the block indices in the order they should be shot
+	 * @param length   the number of shots to take from order
+	 * @return the book
+	 */
+	public static OpeningBook fromOrder(int gridsize, int[] order, int length) {
+		ByteBuffer table = ByteBuffer.allocate(HEADER_SIZE + 2 * length);
+		table.putInt(MAGIC).putShort(VERSION).putShort((short) gridsize).putShort((short) length);
+		for (int i = 0; i < length; i++) {
+			table.putShort((short) order[i]);
+		}
+		table.flip();
+		return new OpeningBook(table, gridsize, length);
+	}
+
+	/**
+	 * Memory-maps the book stored at path.
+	 *
+	 * @param path the book file
+	 * @return the loaded book
+	 * @throws IOException if the file can't be read, is not a book of this
+	 *                     version or is corrupt
+	 */
+	public static OpeningBook load(Path path) throws IOException {
+		try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+			MappedByteBuffer table = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+			if (table.remaining() < HEADER_SIZE || table.getInt(0) != MAGIC)
+				throw new IOException("Not an opening book: " + path);
+			if (table.getShort(4) != VERSION)
+				throw new IOException("Unsupported opening book version " + table.getShort(4) + " in " + path);
+
+			int gridsize = table.getShort(6);
+			int size = table.getShort(8);
+			if (gridsize < 1 || size < 0)
+				throw new IOException("Corrupt opening book header in " + path);
+			if (table.remaining() != HEADER_SIZE + 2 * size)
+				throw new IOException(String.format("Opening book %s has %d bytes, but %d shots", path,
+						table.remaining(), size));
+
+			// check every shot now, so a corrupt book fails here and not during a game
+			for (int i = 0; i < size; i++) {
+				int cell = table.getShort(HEADER_SIZE + 2 * i);
+				if (cell < 0 || cell >= gridsize * gridsize)
+					throw new IOException(String.format("Shot %d of opening book %s is outside the %dx%d grid: %d",
+							i, path, gridsize, gridsize, cell));
+			}
+			return new OpeningBook(table, gridsize, size);
+		}
+	}
+
+	/**
+	 * Writes this book to path, so it can be loaded with {@link #load(Path)}.
+	 *
+	 * @param path the file to write
+	 * @throws IOException if writing fails
+	 */
+	public void write(Path path) throws IOException {
+		try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buf = table.duplicate();
+			buf.clear().limit(HEADER_SIZE + 2 * size);
+			while (buf.hasRemaining()) {
+				ch.write(buf);
+			}
+		}
+	}
+
+	public int getGridsize() {
+		return gridsize;
+	}
+
+	/**
+	 * Returns the number of shots in this book.
+	 *
+	 * @return the number of shots
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the block index of the i-th shot as described in {@link BitBoard}.
+	 *
+	 * @param i the number of the shot
+	 * @return the block to shoot
+	 */
+	public int get(int i) {
+		return table.getShort(HEADER_SIZE + 2 * i);
+	}
+
+	/**
+	 * Generates a book and writes it to a file.
+	 *
+	 * @param args the file to write, optionally followed by the grid size and the
+	 *             number of shots
+	 * @throws IOException if writing fails
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("Usage: OpeningBook <file> [gridsize] [length]");
+			return;
+		}
+
+		int gridsize = args.length > 1 ? Integer.parseInt(args[1]) : Game.GRID_SIZE;
+		int length = args.length > 2 ? Integer.parseInt(args[2]) : 12;
+		generate(gridsize, length, new Random()).write(Paths.get(args[0]));
+	}
+}
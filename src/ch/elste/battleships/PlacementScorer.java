@@ -0,0 +1,219 @@
+package ch.elste.battleships;
+
+import ch.elste.battleships.Block.BlockType;
+
+/**
+ * Scores the blocks of an opponent's grid by the number of ways the remaining
+ * boats can be placed over them, the heatmap of probability based targeting.
+ *
+ * <p>
+ * The placements are evaluated on boards packed as described in
+ * {@link BitBoard}: shifting the mask of free blocks and and-ing it with itself
+ * finds all starts of a boat in 64 lanes per word. The scores are kept as a
+ * bit-sliced counter, i.e. plane p holds bit p of every block's score, so one
+ * ripple-carry addition updates 64 blocks at once. {@link #scoreScalar} is the
+ * plain per-block version and returns the same scores.
+ *
+ * @author Dillon Elste
+ *
+ */
+public final class PlacementScorer {
+
+	private PlacementScorer() {
+	}
+
+	/**
+	 * Scores the grid g as seen by its opponent. Missed blocks, sunk boats and
+	 * their neighbours can't hold a boat, blocks that were hit but not sunk can.
+	 *
+	 * @param g the grid to score
+	 * @return the score of every block, indexed as described in {@link BitBoard}
+	 */
+	public static int[] score(Grid g) {
+		return score(g.getObservedBlocked(), g.getGridsize(), g.getRemainingBoatsPerLength());
+	}
+
+	/**
+	 * Counts for every block how many placements of the given boats cover it.
+	 * Placements must not cover a blocked block. Each boat of length
+	 * {@code l > 1} can be placed horizontally and vertically.
+	 *
+	 * @param blocked        the blocks that can't hold a boat
+	 * @param gridsize       the side-length of the grid
+	 * @param boatsPerLength the number of boats of every length, indexed by length
+	 * @return the score of every block, indexed as described in {@link BitBoard}
+	 */
+	public static int[] score(long[] blocked, int gridsize, int[] boatsPerLength) {
+		int words = BitBoard.words(gridsize);
+		long[] free = BitBoard.full(gridsize);
+		for (int w = 0; w < words; w++) {
+			free[w] &= ~blocked[w];
+		}
+
+		long[][] planes = new long[planes(gridsize, boatsPerLength)][words];
+		long[] starts = new long[words], tmp = new long[words];
+		for (int l = 1; l < boatsPerLength.length; l++) {
+			int weight = boatsPerLength[l];
+			if (weight == 0 || l > gridsize)
+				continue;
+
+			for (int stride : l == 1 ? new int[] { 1 } : new int[] { 1, gridsize }) {
+				// a boat can start at a free block if the l - 1 blocks after it are free
+				startMask(starts, gridsize, l, stride == 1);
+				for (int w = 0; w < words; w++) {
+					starts[w] &= free[w];
+				}
+				for (int k = 1; k < l; k++) {
+					shiftRight(free, k * stride, tmp);
+					for (int w = 0; w < words; w++) {
+						starts[w] &= tmp[w];
+					}
+				}
+
+				// every block of a placement is covered once
+				for (int k = 0; k < l; k++) {
+					shiftLeft(starts, k * stride, tmp);
+					add(planes, tmp, weight);
+				}
+			}
+		}
+
+		int[] res = new int[gridsize * gridsize];
+		for (int p = 0; p < planes.length; p++) {
+			long[] plane = planes[p];
+			for (int w = 0; w < words; w++) {
+				for (long bits = plane[w]; bits != 0; bits &= bits - 1) {
+					res[(w << 6) + Long.numberOfTrailingZeros(bits)] += 1 << p;
+				}
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * The scalar version of {@link #score(long[], int, int[])}, which checks every
+	 * placement block by block.
+	 *
+	 * @param blocked        the blocks that can't hold a boat
+	 * @param gridsize       the side-length of the grid
+	 * @param boatsPerLength the number of boats of every length, indexed by length
+	 * @return the score of every block, indexed as described in {@link BitBoard}
+	 */
+	public static int[] scoreScalar(long[] blocked, int gridsize, int[] boatsPerLength) {
+		int[] res = new int[gridsize * gridsize];
+		for (int l = 1; l < boatsPerLength.length; l++) {
+			int weight = boatsPerLength[l];
+			if (weight == 0)
+				continue;
+
+			for (int dir = 0; dir < (l == 1 ? 1 : 2); dir++) { // 0 horizontal, 1 vertical
+				for (int x = 0; x + (l - 1) * dir < gridsize; x++) {
+					for (int y = 0; y + (l - 1) * (1 - dir) < gridsize; y++) {
+						if (fits(blocked, gridsize, x, y, l, dir)) {
+							for (int k = 0; k < l; k++) {
+								res[BitBoard.index(gridsize, x + k * dir, y + k * (1 - dir))] += weight;
+							}
+						}
+					}
+				}
+			}
+		}
+		return res;
+	}
+
+	private static boolean fits(long[] blocked, int gridsize, int x, int y, int l, int dir) {
+		for (int k = 0; k < l; k++) {
+			if (BitBoard.get(blocked, BitBoard.index(gridsize, x + k * dir, y + k * (1 - dir))))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of bit planes needed for the highest possible score.
+	 */
+	private static int planes(int gridsize, int[] boatsPerLength) {
+		int max = 0;
+		for (int l = 1; l < boatsPerLength.length && l <= gridsize; l++) {
+			max += boatsPerLength[l] * l * (l == 1 ? 1 : 2);
+		}
+		return Math.max(1, 32 - Integer.numberOfLeadingZeros(max));
+	}
+
+	/**
+	 * Sets the blocks of m where a boat of length l can start without leaving the
+	 * grid.
+	 */
+	private static void startMask(long[] m, int gridsize, int l, boolean horizontal) {
+		for (int w = 0; w < m.length; w++) {
+			m[w] = 0;
+		}
+		if (horizontal)
+			BitBoard.setRect(m, gridsize, 0, 0, gridsize - 1, gridsize - l);
+		else
+			BitBoard.setRect(m, gridsize, 0, 0, gridsize - l, gridsize - 1);
+	}
+
+	/**
+	 * Adds weight to the counters of all blocks set in m.
+	 */
+	private static void add(long[][] planes, long[] m, int weight) {
+		for (int w = 0; w < m.length; w++) {
+			if (m[w] == 0)
+				continue;
+
+			for (int j = 0; (weight >>> j) != 0; j++) {
+				if ((weight & (1 << j)) == 0)
+					continue;
+
+				long carry = m[w];
+				for (int p = j; p < planes.length && carry != 0; p++) {
+					long t = planes[p][w] & carry;
+					planes[p][w] ^= carry;
+					carry = t;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stores m shifted towards lower indices by s bits in res, i.e. bit i of res is
+	 * bit i + s of m.
+	 */
+	private static void shiftRight(long[] m, int s, long[] res) {
+		int ws = s >>> 6, bs = s & 63;
+		for (int w = 0; w < res.length; w++) {
+			long lo = w + ws < m.length ? m[w + ws] : 0;
+			long hi = w + ws + 1 < m.length ? m[w + ws + 1] : 0;
+			res[w] = bs == 0 ? lo : (lo >>> bs) | (hi << (64 - bs));
+		}
+	}
+
+	/**
+	 * Stores m shifted towards higher indices by s bits in res, i.e. bit i + s of
+	 * res is bit i of m.
+	 */
+	private static void shiftLeft(long[] m, int s, long[] res) {
+		int ws = s >>> 6, bs = s & 63;
+		for (int w = 0; w < res.length; w++) {
+			long lo = w - ws >= 0 ? m[w - ws] : 0;
+			long lower = w - ws - 1 >= 0 ? m[w - ws - 1] : 0;
+			res[w] = bs == 0 ? lo : (lo << bs) | (lower >>> (64 - bs));
+		}
+	}
+
+	/**
+	 * Returns the number of boats of every length of a full fleet, indexed by
+	 * length.
+	 *
+	 * @return the boats per length
+	 */
+	public static int[] fleet() {
+		int[] res = new int[BlockType.CRUISER.length + 1];
+		for (int i = 0; i < 4; i++) {
+			BlockType t = BlockType.getTypeFromIndex(i);
+			res[t.length] += t.amount;
+		}
+		return res;
+	}
+}
@@ -1,39 +1,194 @@
 package ch.elste.battleships;
 
+import java.util.ArrayDeque;
+import java.util.Random;
+
 import ch.elste.battleships.Block.BlockType;
+import ch.elste.battleships.Exceptions.BoatCollisionException;
+import ch.elste.battleships.Exceptions.IllegalBoatSpecException;
 
+/**
+ * A cpu player shooting randomly. If an {@link OpeningBook} is set, its shots
+ * are taken first. Once it knows the state of its game, see
+ * {@link #setGameState(GameState)}, it only picks blocks that weren't shot yet.
+ * 
+ * @author Dillon Elste
+ *
+ */
 public class PlayerCpu extends AbstractPlayer {
 	private int gridsize;
+	private Random rng;
+	private OpeningBook book;
+	private int bookPos;
+	private GameState gs;
+	private Grid scratch;
 
-	public PlayerCpu(int playerNumber, int gridsize) {
+	/**
+	 * The corners of the last random boat, from x, from y, to x and to y.
+	 */
+	private int[] boat = new int[4];
+	private ArrayDeque<Coordinate[]> plannedBoats = new ArrayDeque<>();
+	private ArrayDeque<BlockType> plannedTypes = new ArrayDeque<>();
+
+	/**
+	 * How often a boat may collide before the planned fleet is started over.
+	 */
+	private static final int MAX_PLACEMENT_TRIES = 100;
+
+	public PlayerCpu(int playerNumber, int gridsize, Random rng) {
 		this.playerNumber = playerNumber;
 		this.gridsize = gridsize;
+		this.rng = rng;
+	}
+
+	public PlayerCpu(int playerNumber, int gridsize) {
+		this(playerNumber, gridsize, new Random());
+	}
+
+	/**
+	 * Reseeds the random choices of this player.
+	 * 
+	 * @param seed the new seed
+	 */
+	public void setSeed(long seed) {
+		rng.setSeed(seed);
+	}
+
+	/**
+	 * Sets the book of first shots or removes it if book is null.
+	 * 
+	 * @param book the book to use
+	 */
+	public void setOpeningBook(OpeningBook book) {
+		if (book != null && book.getGridsize() != gridsize)
+			throw new IllegalArgumentException("Opening book is for grid size " + book.getGridsize());
+		this.book = book;
+		this.bookPos = 0;
+	}
+
+	/**
+	 * Sets the state of the game this player plays next, which starts the opening
+	 * book over. Book shots at blocks that were already shot in gs, e.g. in a
+	 * resumed game, are skipped.
+	 * 
+	 * @param gs the state of the game
+	 */
+	public void setGameState(GameState gs) {
+		this.gs = gs;
+		bookPos = 0;
 	}
 
 	@Override
 	public Coordinate getNextShot() {
-		int x = (int) Math.round(Math.random() * gridsize);
-		int y = (int) Math.round(Math.random() * gridsize);
+		while (book != null && bookPos < book.size()) {
+			int cell = book.get(bookPos++);
+			Coordinate c = new Coordinate(cell / gridsize, cell % gridsize);
+			if (isShootable(c))
+				return c;
+		}
+
+		if (gs != null)
+			return gs.randomLegalShot(rng, playerNumber);
+
+		int x = (int) Math.round(rng.nextDouble() * gridsize);
+		int y = (int) Math.round(rng.nextDouble() * gridsize);
 		return new Coordinate(x, y);
 	}
 
+	/**
+	 * Returns true if c wasn't shot yet in the current game, or if the game isn't
+	 * known.
+	 */
+	private boolean isShootable(Coordinate c) {
+		try {
+			return gs == null || gs.isValid(c, playerNumber);
+		} catch (IllegalBoatSpecException e) {
+			return false; // the book is for this grid size, see setOpeningBook
+		}
+	}
+
+	/**
+	 * Returns the next boat of a fleet planned in advance. Placing random boats one
+	 * by one can leave no room for the remaining ones, so the whole fleet is
+	 * placed on a scratch grid first and started over if it gets stuck. A new fleet
+	 * is planned whenever the requested type does not match the plan.
+	 */
 	@Override
 	public Coordinate[] getBoat(BlockType type) {
-		int dir = (int) (Math.random() * 2); // 1 horizontal, 0 vertical
+		if (plannedTypes.isEmpty() || plannedTypes.peek() != type)
+			planFleet(type);
+
+		plannedTypes.poll();
+		return plannedBoats.poll();
+	}
+
+	/**
+	 * Plans a complete fleet, starting with the boats of the given type.
+	 *
+	 * @param first the type of the boat asked for
+	 */
+	private void planFleet(BlockType first) {
+		do {
+			plannedBoats.clear();
+			plannedTypes.clear();
+		} while (!tryPlanFleet(scratch(), first));
+	}
+
+	/**
+	 * Returns the empty grid the fleet is planned on, which is reused.
+	 */
+	private Grid scratch() {
+		if (scratch == null)
+			scratch = new Grid(gridsize);
+		else
+			scratch.reset();
+		return scratch;
+	}
+
+	private boolean tryPlanFleet(Grid g, BlockType first) {
+		for (int i = first.ordinal() - 1; i < 4; i++) { // WATER comes first
+			BlockType t = BlockType.getTypeFromIndex(i);
+			for (int n = 0; n < t.amount; n++) {
+				int tries = 0;
+				do {
+					if (++tries > MAX_PLACEMENT_TRIES)
+						return false; // probably no room left, start over
+					randomBoat(t);
+				} while (!g.canAddBoat(boat[0], boat[1], boat[2], boat[3]));
+
+				Coordinate[] cs = { new Coordinate(boat[0], boat[1]), new Coordinate(boat[2], boat[3]) };
+				try {
+					g.addBoat(cs[0], cs[1], t, playerNumber);
+				} catch (BoatCollisionException | IllegalBoatSpecException e) {
+					throw new AssertionError(e); // checked by canAddBoat
+				}
+				plannedBoats.add(cs);
+				plannedTypes.add(t);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Stores a random boat of the given type in {@link #boat}.
+	 */
+	private void randomBoat(BlockType type) {
+		int dir = (int) (rng.nextDouble() * 2); // 1 horizontal, 0 vertical
 		int x, y;
 		int length = type.length - 1; // the -1 is needed because to is exclusive
 
 		if (dir == 1) {
-			x = (int) (Math.random() * (gridsize - length));
-			y = (int) (Math.random() * gridsize);
+			x = (int) (rng.nextDouble() * (gridsize - length));
+			y = (int) (rng.nextDouble() * gridsize);
 		} else {
-			x = (int) (Math.random() * gridsize);
-			y = (int) (Math.random() * (gridsize - length));
+			x = (int) (rng.nextDouble() * gridsize);
+			y = (int) (rng.nextDouble() * (gridsize - length));
 		}
 
-		Coordinate from = new Coordinate(x, y);
-		Coordinate to = new Coordinate(x + length * dir, y + length * (1 - dir));
-		return new Coordinate[] { from, to };
+		boat[0] = x;
+		boat[1] = y;
+		boat[2] = x + length * dir;
+		boat[3] = y + length * (1 - dir);
 	}
 
 }
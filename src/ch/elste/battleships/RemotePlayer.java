@@ -0,0 +1,139 @@
+package ch.elste.battleships;
+
+import java.io.EOFException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+import ch.elste.battleships.Block.BlockType;
+import ch.elste.battleships.LineReader.LineHandler;
+
+/**
+ * A human player connected through a channel registered with an
+ * {@link InputSelector}. Requesting a move only creates a future, which is
+ * completed once the player sends a line containing the move. No thread waits
+ * for the player in the meantime. Lines sent before a move is requested are
+ * kept for the next request, up to {@value #MAX_BACKLOG} lines. Lines without
+ * enough coordinates are skipped. A request that is cancelled, e.g. because
+ * the player missed his deadline, is withdrawn, and a line arriving afterwards
+ * is kept for the next request.
+ *
+ * @author Dillon Elste
+ *
+ */
+public class RemotePlayer implements AsyncPlayer, LineHandler {
+	private static final int MAX_BACKLOG = 16;
+
+	private int playerNumber;
+	private ArrayDeque<byte[]> backlog;
+	private CompletableFuture<Coordinate[]> pending;
+	private int wanted;
+	private boolean closed;
+
+	public RemotePlayer(int playerNumber) {
+		this.playerNumber = playerNumber;
+		this.backlog = new ArrayDeque<>();
+	}
+
+	@Override
+	public int getPlayerNumber() {
+		return playerNumber;
+	}
+
+	@Override
+	public CompletableFuture<Coordinate[]> getBoat(BlockType type) {
+		return request(2);
+	}
+
+	@Override
+	public CompletableFuture<Coordinate> getNextShot() {
+		CompletableFuture<Coordinate[]> f = request(1);
+		CompletableFuture<Coordinate> shot = new CompletableFuture<>() {
+			@Override
+			public boolean cancel(boolean mayInterruptIfRunning) {
+				f.cancel(mayInterruptIfRunning);
+				return super.cancel(mayInterruptIfRunning);
+			}
+		};
+		f.whenComplete((cs, e) -> {
+			if (e == null)
+				shot.complete(cs[0]);
+			else
+				shot.completeExceptionally(e);
+		});
+		return shot;
+	}
+
+	private synchronized CompletableFuture<Coordinate[]> request(int n) {
+		if (pending != null)
+			throw new IllegalStateException("Another move is still pending");
+
+		CompletableFuture<Coordinate[]> f = new CompletableFuture<>() {
+			@Override
+			public boolean cancel(boolean mayInterruptIfRunning) {
+				withdraw(this); // before the stages depending on the request run
+				return super.cancel(mayInterruptIfRunning);
+			}
+		};
+		while (!backlog.isEmpty()) { // the player may have answered already
+			byte[] line = backlog.poll();
+			Coordinate[] cs = new Coordinate[n];
+			if (CoordinateParser.parse(line, line.length, cs) == n) {
+				f.complete(cs);
+				return f;
+			}
+		}
+
+		if (closed) {
+			f.completeExceptionally(new EOFException("Player " + playerNumber + " disconnected"));
+			return f;
+		}
+		pending = f;
+		wanted = n;
+		return f;
+	}
+
+	/**
+	 * Forgets the request f if it is pending, so the next line is kept for the
+	 * next request.
+	 */
+	private synchronized void withdraw(CompletableFuture<Coordinate[]> f) {
+		if (pending == f)
+			pending = null;
+	}
+
+	@Override
+	public void line(byte[] line, int len) {
+		CompletableFuture<Coordinate[]> f;
+		Coordinate[] cs;
+		synchronized (this) {
+			if (pending == null) { // not requested yet
+				if (backlog.size() < MAX_BACKLOG)
+					backlog.add(Arrays.copyOf(line, len));
+				return;
+			}
+
+			cs = new Coordinate[wanted];
+			if (CoordinateParser.parse(line, len, cs) < wanted)
+				return; // wrong format, wait for the next line
+
+			f = pending;
+			pending = null;
+		}
+		// outside the lock, dependent stages may request the next move
+		if (!f.complete(cs))
+			line(line, len); // cancelled in the meantime, keep the line for the next request
+	}
+
+	@Override
+	public void closed() {
+		CompletableFuture<Coordinate[]> f;
+		synchronized (this) {
+			closed = true;
+			f = pending;
+			pending = null;
+		}
+		if (f != null)
+			f.completeExceptionally(new EOFException("Player " + playerNumber + " disconnected"));
+	}
+}
@@ -0,0 +1,48 @@
+package ch.elste.battleships;
+
+/**
+ * The outcome of a salvo fired with {@link Grid#shootAll(int[])}. Both masks are
+ * laid out as described in {@link BitBoard}.
+ *
+ * @author Dillon Elste
+ *
+ */
+public class SalvoResult {
+	private final long[] hits;
+	private final long[] sunk;
+
+	public SalvoResult(long[] hits, long[] sunk) {
+		this.hits = hits;
+		this.sunk = sunk;
+	}
+
+	/**
+	 * Returns the mask of all fired blocks that were part of a boat.
+	 *
+	 * @return the hit mask
+	 */
+	public long[] getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the mask of all blocks of the boats that were sunk by this salvo.
+	 *
+	 * @return the sunk mask
+	 */
+	public long[] getSunk() {
+		return sunk;
+	}
+
+	public int getHitCount() {
+		return BitBoard.count(hits);
+	}
+
+	public boolean isHit(int cell) {
+		return BitBoard.get(hits, cell);
+	}
+
+	public boolean isSunk(int cell) {
+		return BitBoard.get(sunk, cell);
+	}
+}
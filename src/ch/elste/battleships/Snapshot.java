@@ -0,0 +1,126 @@
+package ch.elste.battleships;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A saved game, i.e. the {@link GameState}, the player whose turn it is and the
+ * seed of the cpu player. Snapshots are written with {@link SnapshotWriter} and
+ * restored with {@link #readAll(Path)} and {@link Game#resume(Snapshot)}.
+ *
+ * <p>
+ * A snapshot file starts with {@link #MAGIC} and {@link #VERSION}, followed by
+ * one record per game: its length in bytes, the turn, the seed and the grids.
+ *
+ * @author Dillon Elste
+ *
+ */
+public class Snapshot {
+	public static final int MAGIC = 0x42534850; // "BSHP"
+	public static final short VERSION = 1;
+
+	static final int HEADER_SIZE = 4 + 2;
+
+	private GameState gameState;
+	private int turn;
+	private long seed;
+
+	public Snapshot(GameState gameState, int turn, long seed) {
+		this.gameState = gameState;
+		this.turn = turn;
+		this.seed = seed;
+	}
+
+	public GameState getGameState() {
+		return gameState;
+	}
+
+	/**
+	 * Returns the number of the player who moves next.
+	 *
+	 * @return the number of the player who moves next
+	 */
+	public int getTurn() {
+		return turn;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Returns the number of bytes {@link #writeTo(ByteBuffer)} writes.
+	 *
+	 * @return the size of the record
+	 */
+	int getRecordSize() {
+		return 4 + 1 + 8 + gameState.getSnapshotSize();
+	}
+
+	void writeTo(ByteBuffer buf) {
+		buf.putInt(getRecordSize() - 4);
+		buf.put((byte) turn);
+		buf.putLong(seed);
+		gameState.writeTo(buf);
+	}
+
+	/**
+	 * Reads a record written by {@link #writeTo(ByteBuffer)} without its length,
+	 * from a buffer holding exactly that record.
+	 *
+	 * @throws IOException if the record is corrupt
+	 */
+	static Snapshot readFrom(ByteBuffer record) throws IOException {
+		try {
+			int turn = record.get();
+			long seed = record.getLong();
+			GameState gs = GameState.readFrom(record);
+			if (record.hasRemaining())
+				throw new IOException("Corrupt snapshot record: " + record.remaining() + " bytes left over");
+			return new Snapshot(gs, turn, seed);
+		} catch (RuntimeException e) {
+			// e.g. a BufferUnderflowException if the grids don't fit the length
+			throw new IOException("Corrupt snapshot record", e);
+		}
+	}
+
+	/**
+	 * Reads all snapshots stored in the file at path. A record cut short at the
+	 * end of the file, e.g. because the writer crashed before it synced, is
+	 * skipped, so the games before it are still restored.
+	 *
+	 * @param path the snapshot file
+	 * @return the snapshots in the order they were written
+	 * @throws IOException if the file can't be read, is not a snapshot file of
+	 *                     this version or holds a corrupt record
+	 */
+	public static List<Snapshot> readAll(Path path) throws IOException {
+		List<Snapshot> res = new ArrayList<>();
+		try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+			MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+			if (buf.remaining() < HEADER_SIZE || buf.getInt() != MAGIC)
+				throw new IOException("Not a snapshot file: " + path);
+			short version = buf.getShort();
+			if (version != VERSION)
+				throw new IOException("Unsupported snapshot version " + version + " in " + path);
+
+			while (buf.remaining() >= 4) {
+				int length = buf.getInt();
+				if (length < 0)
+					throw new IOException("Corrupt snapshot record at " + (buf.position() - 4) + " in " + path);
+				if (length > buf.remaining())
+					break; // truncated tail
+
+				res.add(readFrom(buf.slice(buf.position(), length)));
+				buf.position(buf.position() + length);
+			}
+		}
+		return res;
+	}
+}
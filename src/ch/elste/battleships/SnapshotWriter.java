@@ -0,0 +1,99 @@
+package ch.elste.battleships;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes {@link Snapshot}s of many games into one file. Records are buffered and
+ * the file is only synced to disk every {@code syncInterval} snapshots and on
+ * {@link #close()}, so saving many games costs few fsyncs.
+ *
+ * @author Dillon Elste
+ *
+ */
+public class SnapshotWriter implements Closeable {
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private FileChannel channel;
+	private ByteBuffer buf;
+	private int syncInterval;
+	private int unsynced;
+
+	/**
+	 * Creates a new snapshot file at path, replacing an existing one.
+	 *
+	 * @param path         the file to write to
+	 * @param syncInterval the number of snapshots after which the file is synced
+	 * @throws IOException if the file can't be opened
+	 */
+	public SnapshotWriter(Path path, int syncInterval) throws IOException {
+		if (syncInterval < 1)
+			throw new IllegalArgumentException("syncInterval has to be positive: " + syncInterval);
+
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		this.buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		this.syncInterval = syncInterval;
+		this.unsynced = 0;
+
+		buf.putInt(Snapshot.MAGIC);
+		buf.putShort(Snapshot.VERSION);
+	}
+
+	/**
+	 * Appends snapshot s to the file.
+	 *
+	 * @param s the snapshot to write
+	 * @throws IOException if writing fails
+	 */
+	public void write(Snapshot s) throws IOException {
+		int size = s.getRecordSize();
+		if (buf.remaining() < size) {
+			flush();
+			if (buf.capacity() < size)
+				buf = ByteBuffer.allocateDirect(size);
+		}
+		s.writeTo(buf);
+
+		if (++unsynced >= syncInterval) {
+			sync();
+		}
+	}
+
+	/**
+	 * Writes all buffered snapshots to the file without syncing it.
+	 *
+	 * @throws IOException if writing fails
+	 */
+	public void flush() throws IOException {
+		buf.flip();
+		while (buf.hasRemaining()) {
+			channel.write(buf);
+		}
+		buf.clear();
+	}
+
+	/**
+	 * Writes all buffered snapshots and syncs the file to disk.
+	 *
+	 * @throws IOException if writing fails
+	 */
+	public void sync() throws IOException {
+		flush();
+		channel.force(false);
+		unsynced = 0;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			sync();
+		} finally {
+			channel.close();
+		}
+	}
+}
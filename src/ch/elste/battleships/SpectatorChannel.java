@@ -0,0 +1,124 @@
+package ch.elste.battleships;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import ch.elste.battleships.Block.BlockType;
+
+/**
+ * Broadcasts a game to spectators. After each shot only the changed blocks are
+ * sent, i.e. the shot block and the whole boat if it was sunk. Every
+ * {@code keyframeInterval} shots a keyframe of all grids is sent. A spectator
+ * subscribing during a game receives the last keyframe and the deltas since.
+ *
+ * <p>
+ * Register the channel with {@link Game#addListener(GameListener)} or
+ * {@link AsyncGame#addListener(GameListener)}.
+ *
+ * @author Dillon Elste
+ *
+ */
+public class SpectatorChannel implements GameListener {
+	private CopyOnWriteArrayList<Consumer<SpectatorUpdate>> spectators;
+	private int keyframeInterval;
+	private GameState gs;
+	private int sequence;
+	private int shots;
+	private SpectatorUpdate keyframe;
+	private List<SpectatorUpdate> deltas;
+
+	/**
+	 * @param keyframeInterval the number of shots after which a keyframe is sent
+	 */
+	public SpectatorChannel(int keyframeInterval) {
+		if (keyframeInterval < 1)
+			throw new IllegalArgumentException("keyframeInterval has to be positive: " + keyframeInterval);
+
+		this.spectators = new CopyOnWriteArrayList<>();
+		this.keyframeInterval = keyframeInterval;
+		this.deltas = new ArrayList<>();
+	}
+
+	/**
+	 * Adds a spectator. If the game is running, the spectator immediately
+	 * receives the last keyframe and all deltas since. The spectator is called on
+	 * the game's thread, so it must not block.
+	 *
+	 * @param spectator receives the updates
+	 */
+	public synchronized void subscribe(Consumer<SpectatorUpdate> spectator) {
+		if (keyframe != null) {
+			spectator.accept(keyframe);
+			for (SpectatorUpdate u : deltas) {
+				spectator.accept(u);
+			}
+		}
+		spectators.add(spectator);
+	}
+
+	public void unsubscribe(Consumer<SpectatorUpdate> spectator) {
+		spectators.remove(spectator);
+	}
+
+	@Override
+	public synchronized void gameStarted(GameState gs) {
+		this.gs = gs;
+		this.shots = 0;
+		publishKeyframe();
+	}
+
+	@Override
+	public synchronized void shotFired(int playerNumber, int target, Coordinate c) {
+		Grid g = gs.getGrid(target);
+		publish(new SpectatorUpdate(SpectatorUpdate.DELTA, sequence++, target,
+				new int[] { BitBoard.index(g.getGridsize(), c.getX(), c.getY()) },
+				new char[] { g.getPublicSymbolAt(c) }));
+
+		if (++shots % keyframeInterval == 0)
+			publishKeyframe();
+	}
+
+	@Override
+	public synchronized void sunk(int playerNumber, int target, Coordinate[] boat, BlockType type) {
+		int gridsize = gs.getGrid(target).getGridsize();
+		int[] cells = new int[boat.length];
+		char[] symbols = new char[boat.length];
+		for (int i = 0; i < boat.length; i++) {
+			cells[i] = BitBoard.index(gridsize, boat[i].getX(), boat[i].getY());
+			symbols[i] = type.symbol;
+		}
+		publish(new SpectatorUpdate(SpectatorUpdate.DELTA, sequence++, target, cells, symbols));
+	}
+
+	private void publishKeyframe() {
+		int gridsize = gs.getGrid(0).getGridsize();
+		int cellsPerGrid = gridsize * gridsize;
+		int[] cells = new int[gs.getPlayerCount() * cellsPerGrid];
+		char[] symbols = new char[cells.length];
+		for (int p = 0; p < gs.getPlayerCount(); p++) {
+			Grid g = gs.getGrid(p);
+			for (int x = 0; x < gridsize; x++) {
+				for (int y = 0; y < gridsize; y++) {
+					int i = p * cellsPerGrid + BitBoard.index(gridsize, x, y);
+					cells[i] = i;
+					symbols[i] = g.getPublicSymbolAt(new Coordinate(x, y));
+				}
+			}
+		}
+
+		keyframe = new SpectatorUpdate(SpectatorUpdate.KEYFRAME, sequence++, -1, cells, symbols);
+		deltas.clear();
+		for (Consumer<SpectatorUpdate> s : spectators) {
+			s.accept(keyframe);
+		}
+	}
+
+	private void publish(SpectatorUpdate u) {
+		deltas.add(u);
+		for (Consumer<SpectatorUpdate> s : spectators) {
+			s.accept(u);
+		}
+	}
+}
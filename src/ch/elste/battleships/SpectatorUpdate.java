@@ -0,0 +1,126 @@
+package ch.elste.battleships;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An immutable update sent to spectators by a {@link SpectatorChannel}. A
+ * keyframe contains the public symbols of all blocks of all grids, a delta only
+ * the blocks of one grid that changed. The same instance is passed to every
+ * spectator, so it is built and encoded only once.
+ *
+ * <p>
+ * The encoding is one byte for the kind, the sequence number as int, the player
+ * as byte and the number of blocks as int, followed by a block index as int and
+ * the symbol as byte for each block. A keyframe lists the blocks of all grids
+ * in order and has the player -1, so it can hold more blocks than fit in a
+ * short. {@link #decode(ByteBuffer)} reads the encoding back.
+ *
+ * @author Dillon Elste
+ *
+ */
+public class SpectatorUpdate {
+	public static final byte KEYFRAME = 1, DELTA = 2;
+
+	private byte kind;
+	private int sequence;
+	private int player;
+	private int[] cells;
+	private char[] symbols;
+	private byte[] encoded;
+
+	SpectatorUpdate(byte kind, int sequence, int player, int[] cells, char[] symbols) {
+		this.kind = kind;
+		this.sequence = sequence;
+		this.player = player;
+		this.cells = cells;
+		this.symbols = symbols;
+	}
+
+	public boolean isKeyframe() {
+		return kind == KEYFRAME;
+	}
+
+	/**
+	 * Returns the number of this update. Updates are numbered consecutively, a
+	 * spectator missing one has to wait for the next keyframe.
+	 *
+	 * @return the sequence number
+	 */
+	public int getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Returns the player whose grid changed or -1 for a keyframe.
+	 *
+	 * @return the player number
+	 */
+	public int getPlayer() {
+		return player;
+	}
+
+	public int getSize() {
+		return cells.length;
+	}
+
+	/**
+	 * Returns the index of the i-th changed block as described in
+	 * {@link BitBoard}. In a keyframe the blocks of all grids are numbered
+	 * consecutively.
+	 *
+	 * @param i the number of the block in this update
+	 * @return the index of the block
+	 */
+	public int getCell(int i) {
+		return cells[i];
+	}
+
+	public char getSymbol(int i) {
+		return symbols[i];
+	}
+
+	/**
+	 * Returns this update encoded as bytes, e.g. to write it to a socket.
+	 *
+	 * @return a read-only buffer of the encoded update
+	 */
+	public synchronized ByteBuffer getEncoded() {
+		if (encoded == null) {
+			ByteBuffer buf = ByteBuffer.allocate(1 + 4 + 1 + 4 + 5 * cells.length);
+			buf.put(kind).putInt(sequence).put((byte) player).putInt(cells.length);
+			for (int i = 0; i < cells.length; i++) {
+				buf.putInt(cells[i]).put((byte) symbols[i]);
+			}
+			encoded = buf.array();
+		}
+		return ByteBuffer.wrap(encoded).asReadOnlyBuffer();
+	}
+
+	/**
+	 * Reads an update encoded by {@link #getEncoded()}, e.g. on the side of a
+	 * spectator.
+	 *
+	 * @param buf the encoded update, positioned at its first byte
+	 * @return the decoded update
+	 * @throws IllegalArgumentException if buf doesn't hold a valid update
+	 */
+	public static SpectatorUpdate decode(ByteBuffer buf) {
+		if (buf.remaining() < 1 + 4 + 1 + 4)
+			throw new IllegalArgumentException("Update too short: " + buf.remaining() + " bytes");
+
+		byte kind = buf.get();
+		int sequence = buf.getInt();
+		int player = buf.get();
+		int size = buf.getInt();
+		if (kind != KEYFRAME && kind != DELTA || size < 0 || size > buf.remaining() / 5)
+			throw new IllegalArgumentException("Corrupt update of kind " + kind + " with " + size + " blocks");
+
+		int[] cells = new int[size];
+		char[] symbols = new char[size];
+		for (int i = 0; i < size; i++) {
+			cells[i] = buf.getInt();
+			symbols[i] = (char) buf.get();
+		}
+		return new SpectatorUpdate(kind, sequence, player, cells, symbols);
+	}
+}
@@ -0,0 +1,210 @@
+package ch.elste.battleships;
+
+import java.util.function.LongFunction;
+
+/**
+ * A bounded map from board hashes, e.g. {@link Grid#getObservedHash()}, to
+ * results computed for that board, such as the next target of a search player.
+ * It can be shared by the players of many games on many threads.
+ *
+ * <p>
+ * The entries are split into stripes by hash, each guarded by its own lock, so
+ * threads rarely wait for each other. A full stripe evicts with the CLOCK
+ * algorithm: every entry has a reference bit that is set when it is used, and
+ * the hand of the clock evicts the first entry whose bit is clear, clearing the
+ * bits it passes. This approximates LRU without reordering entries on reads.
+ *
+ * @author Dillon Elste
+ *
+ * @param <V> the type of the cached results
+ */
+public class TranspositionCache<V> {
+	private final Stripe[] stripes;
+	private final int stripeMask;
+
+	/**
+	 * @param capacity the maximum number of entries
+	 * @param stripes  the number of independently locked parts, rounded up to a
+	 *                 power of two
+	 */
+	public TranspositionCache(int capacity, int stripes) {
+		if (capacity < 1 || stripes < 1)
+			throw new IllegalArgumentException("Capacity and stripes have to be positive");
+
+		int n = Integer.highestOneBit(stripes - 1) << 1;
+		n = Math.max(1, Integer.highestOneBit(Math.min(n, capacity)));
+		this.stripes = new Stripe[n];
+		for (int i = 0; i < n; i++) {
+			this.stripes[i] = new Stripe(capacity / n);
+		}
+		this.stripeMask = n - 1;
+	}
+
+	/**
+	 * Creates a cache with one stripe per available processor.
+	 *
+	 * @param capacity the maximum number of entries
+	 */
+	public TranspositionCache(int capacity) {
+		this(capacity, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Returns the result cached for hash, or null.
+	 *
+	 * @param hash the hash of the board
+	 * @return the cached result or null
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long hash) {
+		return (V) stripe(hash).get(hash);
+	}
+
+	/**
+	 * Caches result for hash, replacing a previous result for the same hash.
+	 *
+	 * @param hash   the hash of the board
+	 * @param result the result to cache, not null
+	 */
+	public void put(long hash, V result) {
+		if (result == null)
+			throw new NullPointerException("Can't cache null");
+
+		stripe(hash).put(hash, result);
+	}
+
+	/**
+	 * Returns the result cached for hash, computing and caching it if there is
+	 * none. The computation runs without holding a lock, so two threads may
+	 * compute the same result at the same time.
+	 *
+	 * @param hash    the hash of the board
+	 * @param compute computes the result from the hash
+	 * @return the cached or computed result
+	 */
+	public V computeIfAbsent(long hash, LongFunction<V> compute) {
+		V res = get(hash);
+		if (res == null) {
+			res = compute.apply(hash);
+			put(hash, res);
+		}
+		return res;
+	}
+
+	/**
+	 * Returns the number of cached results.
+	 *
+	 * @return the number of entries
+	 */
+	public int size() {
+		int n = 0;
+		for (Stripe s : stripes) {
+			synchronized (s) {
+				n += s.size;
+			}
+		}
+		return n;
+	}
+
+	private Stripe stripe(long hash) {
+		return stripes[(int) (hash >>> 32) & stripeMask];
+	}
+
+	/**
+	 * An open-addressing hash table with linear probing, at most half full, and a
+	 * clock over its slots.
+	 */
+	private static final class Stripe {
+		private final long[] keys;
+		private final Object[] values;
+		private final boolean[] referenced;
+		private final int capacity;
+		private final int mask;
+		private int size;
+		private int hand;
+
+		Stripe(int capacity) {
+			int slots = Integer.highestOneBit(Math.max(1, capacity) * 2 - 1) << 1;
+			this.keys = new long[slots];
+			this.values = new Object[slots];
+			this.referenced = new boolean[slots];
+			this.capacity = capacity;
+			this.mask = slots - 1;
+		}
+
+		synchronized Object get(long hash) {
+			int i = find(hash);
+			if (values[i] == null)
+				return null;
+
+			referenced[i] = true;
+			return values[i];
+		}
+
+		synchronized void put(long hash, Object result) {
+			int i = find(hash);
+			if (values[i] == null) {
+				if (size == capacity) {
+					evict();
+					i = find(hash); // the eviction may have moved the slot
+				}
+				keys[i] = hash;
+				size++;
+			}
+			values[i] = result;
+			referenced[i] = true;
+		}
+
+		/**
+		 * Returns the slot holding hash or the empty slot where it belongs.
+		 */
+		private int find(long hash) {
+			int i = (int) hash & mask;
+			while (values[i] != null && keys[i] != hash) {
+				i = (i + 1) & mask;
+			}
+			return i;
+		}
+
+		/**
+		 * Advances the hand to the first entry that wasn't used since the hand last
+		 * passed it and removes it.
+		 */
+		private void evict() {
+			while (true) {
+				int i = hand;
+				hand = (hand + 1) & mask;
+				if (values[i] == null)
+					continue;
+				if (referenced[i]) {
+					referenced[i] = false; // second chance
+					continue;
+				}
+				remove(i);
+				return;
+			}
+		}
+
+		/**
+		 * Removes the entry in slot i and moves later entries of the same probe
+		 * sequence back, so no lookup passes an empty slot before its entry.
+		 */
+		private void remove(int i) {
+			values[i] = null;
+			referenced[i] = false;
+			size--;
+			for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+				int home = (int) keys[j] & mask;
+				// move the entry if its home slot isn't cyclically in (i, j]
+				if (((j - home) & mask) >= ((j - i) & mask)) {
+					keys[i] = keys[j];
+					values[i] = values[j];
+					referenced[i] = referenced[j];
+					values[j] = null;
+					referenced[j] = false;
+					i = j;
+				}
+			}
+		}
+	}
+}
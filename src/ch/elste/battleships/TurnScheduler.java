@@ -0,0 +1,267 @@
+package ch.elste.battleships;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import ch.elste.battleships.GameListener.Rejection;
+import ch.elste.battleships.Exceptions.IllegalBoatSpecException;
+
+/**
+ * Polls players for their shots and makes sure every move ends. A move ends
+ * with the first legal shot of the player, or with a shot chosen by the
+ * {@link FallbackPolicy} if the player misses the deadline of the move or makes
+ * too many invalid shots.
+ *
+ * <p>
+ * A synchronous {@link Player} cannot be interrupted, so with a deadline it is
+ * asked for its shot on a thread of the scheduler. When the deadline passes the
+ * game goes on without it, but the call keeps running: a player is never called
+ * again while his last call is unfinished, instead the next move waits for that
+ * call and takes its shot. Handing every shot to another thread is the price
+ * of a deadline; players that must move quickly should implement
+ * {@link AsyncPlayer}, whose request is cancelled at the deadline. Without a
+ * deadline the scheduler never reads the clock and calls a synchronous player
+ * directly, so it costs no more than the plain retry loop.
+ *
+ * @author Dillon Elste
+ *
+ */
+public class TurnScheduler {
+	/**
+	 * Waits for a legal shot as long as it takes.
+	 */
+	public static final TurnScheduler UNLIMITED = new TurnScheduler();
+
+	/**
+	 * Runs the calls to synchronous players with a deadline. Daemon threads, so a
+	 * player that never returns doesn't keep the program alive.
+	 */
+	private static final ExecutorService PLAYERS = Executors.newCachedThreadPool(r -> {
+		Thread t = new Thread(r, "TurnScheduler player");
+		t.setDaemon(true);
+		return t;
+	});
+
+	private final long deadline;
+	private final int maxInvalidShots;
+	private final FallbackPolicy fallback;
+
+	/**
+	 * The calls of synchronous players that missed their deadline, taken over by
+	 * their next move.
+	 */
+	private final Map<Player, CompletableFuture<Coordinate>> late = Collections
+			.synchronizedMap(new WeakHashMap<>());
+
+	/**
+	 * Chooses the shot of a player whose move was cut short.
+	 */
+	@FunctionalInterface
+	public static interface FallbackPolicy {
+
+		/**
+		 * Returns a shot the player can legally fire.
+		 *
+		 * @param gs           the state of the game
+		 * @param playerNumber the player to move
+		 * @param salvo        the blocks already part of the current salvo as
+		 *                     described in {@link BitBoard}, or null
+		 * @return the coordinate to shoot
+		 */
+		public Coordinate shot(GameState gs, int playerNumber, long[] salvo);
+
+		/**
+		 * Returns a policy that shoots at a random block the player has not shot
+		 * yet.
+		 *
+		 * @param rng the source of randomness
+		 * @return the policy
+		 */
+		public static FallbackPolicy randomLegal(Random rng) {
+			return (gs, p, salvo) -> {
+				if (salvo == null)
+					return gs.randomLegalShot(rng, p);
+
+				// leave out the blocks already in the salvo
+				int gridsize = gs.getGrid(p).getGridsize();
+				long[] free = gs.filterShootable(BitBoard.full(gridsize), p);
+				for (int w = 0; w < free.length; w++) {
+					free[w] &= ~salvo[w];
+				}
+				int cell = BitBoard.select(free, rng.nextInt(BitBoard.count(free)));
+				return new Coordinate(cell / gridsize, cell % gridsize);
+			};
+		}
+	}
+
+	private TurnScheduler() {
+		this.deadline = 0;
+		this.maxInvalidShots = Integer.MAX_VALUE;
+		this.fallback = null;
+	}
+
+	/**
+	 * @param deadline        the time a player has for each shot, or null for no
+	 *                        limit
+	 * @param maxInvalidShots the number of invalid shots a player may make in a
+	 *                        move before the fallback is used
+	 * @param fallback        chooses the shot of a player whose move was cut
+	 *                        short
+	 */
+	public TurnScheduler(Duration deadline, int maxInvalidShots, FallbackPolicy fallback) {
+		if (deadline != null && (deadline.isNegative() || deadline.isZero()))
+			throw new IllegalArgumentException("Deadline has to be positive: " + deadline);
+		if (maxInvalidShots < 0)
+			throw new IllegalArgumentException("Negative number of invalid shots: " + maxInvalidShots);
+
+		this.deadline = deadline == null ? 0 : deadline.toNanos();
+		this.maxInvalidShots = maxInvalidShots;
+		this.fallback = Objects.requireNonNull(fallback);
+	}
+
+	/**
+	 * Polls player p for a shot until he makes a legal one or his move is cut
+	 * short.
+	 *
+	 * @param p      the player to move
+	 * @param gs     the state of the game
+	 * @param events receives the rejected and replaced shots
+	 * @param salvo  the blocks already part of the current salvo, or null if the
+	 *               shot is fired alone
+	 * @return the coordinate to shoot
+	 */
+	public Coordinate nextShot(Player p, GameState gs, GameEvents events, long[] salvo) {
+		if (deadline != 0)
+			return nextShot(p, gs, events, salvo, System.nanoTime() + deadline);
+
+		int n = p.getPlayerNumber();
+		int invalid = 0;
+		while (true) {
+			Coordinate shot = p.getNextShot();
+			if (accept(shot, n, gs, events, salvo))
+				return shot;
+			if (++invalid > maxInvalidShots)
+				return replace(n, gs, events, salvo);
+		}
+	}
+
+	/**
+	 * Waits for the shots of p until end. A late call is kept for the next move,
+	 * so p is never called twice at the same time.
+	 */
+	private Coordinate nextShot(Player p, GameState gs, GameEvents events, long[] salvo, long end) {
+		int n = p.getPlayerNumber();
+		int invalid = 0;
+		while (true) {
+			CompletableFuture<Coordinate> f = late.remove(p);
+			if (f == null)
+				f = CompletableFuture.supplyAsync(p::getNextShot, PLAYERS);
+
+			Coordinate shot;
+			try {
+				shot = f.get(end - System.nanoTime(), TimeUnit.NANOSECONDS);
+			} catch (TimeoutException e) {
+				late.put(p, f);
+				return replace(n, gs, events, salvo);
+			} catch (InterruptedException e) {
+				late.put(p, f);
+				Thread.currentThread().interrupt();
+				return replace(n, gs, events, salvo);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException)
+					throw (RuntimeException) e.getCause();
+				if (e.getCause() instanceof Error)
+					throw (Error) e.getCause();
+				throw new CompletionException(e.getCause());
+			}
+
+			if (accept(shot, n, gs, events, salvo))
+				return shot;
+			if (++invalid > maxInvalidShots)
+				return replace(n, gs, events, salvo);
+		}
+	}
+
+	/**
+	 * Polls player p for a shot until he makes a legal one or his move is cut
+	 * short. Every step runs on the given executor.
+	 *
+	 * @param p        the player to move
+	 * @param gs       the state of the game
+	 * @param events   receives the rejected and replaced shots
+	 * @param executor runs the steps of the move
+	 * @return a future of the coordinate to shoot
+	 */
+	public CompletableFuture<Coordinate> nextShot(AsyncPlayer p, GameState gs, GameEvents events,
+			Executor executor) {
+		long end = deadline != 0 ? System.nanoTime() + deadline : 0;
+		return nextShot(p, gs, events, executor, end, 0);
+	}
+
+	private CompletableFuture<Coordinate> nextShot(AsyncPlayer p, GameState gs, GameEvents events,
+			Executor executor, long end, int invalid) {
+		int n = p.getPlayerNumber();
+		CompletableFuture<Coordinate> f = p.getNextShot();
+		if (end != 0 && !f.isDone()) {
+			// cancel the player's own request, so he is ready for the next one
+			CompletableFuture.delayedExecutor(end - System.nanoTime(), TimeUnit.NANOSECONDS)
+					.execute(() -> f.cancel(false));
+		}
+		return f.exceptionally(e -> {
+			if (f.isCancelled())
+				return null; // the deadline passed
+			throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+		}).thenComposeAsync(shot -> {
+			if (f.isCancelled() || (end != 0 && System.nanoTime() - end > 0))
+				return CompletableFuture.completedFuture(replace(n, gs, events, null));
+			if (accept(shot, n, gs, events, null))
+				return CompletableFuture.completedFuture(shot);
+			if (invalid + 1 > maxInvalidShots)
+				return CompletableFuture.completedFuture(replace(n, gs, events, null));
+			return nextShot(p, gs, events, executor, end, invalid + 1); // try again
+		}, executor);
+	}
+
+	private static boolean accept(Coordinate shot, int n, GameState gs, GameEvents events, long[] salvo) {
+		if (shot == null)
+			return false;
+
+		try {
+			if (!gs.isValid(shot, n)) {
+				// this square was already shot
+				events.shotRejected(n, shot, Rejection.ALREADY_SHOT);
+				return false;
+			}
+		} catch (IllegalBoatSpecException e) {
+			// the coordinates are outside the grid
+			events.shotRejected(n, shot, Rejection.OUTSIDE_GRID);
+			return false;
+		}
+
+		int gridsize = gs.getGrid(n).getGridsize();
+		if (salvo != null && BitBoard.get(salvo, BitBoard.index(gridsize, shot.getX(), shot.getY()))) {
+			// this square is already part of the salvo
+			events.shotRejected(n, shot, Rejection.ALREADY_IN_SALVO);
+			return false;
+		}
+		return true;
+	}
+
+	private Coordinate replace(int n, GameState gs, GameEvents events, long[] salvo) {
+		Coordinate shot = fallback.shot(gs, n, salvo);
+		events.shotReplaced(n, shot);
+		return shot;
+	}
+}
@@ -0,0 +1,119 @@
+package ch.elste.battleships;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import ch.elste.battleships.Block.BlockType;
+
+/**
+ * Plays games of cpu players on a pool of threads and checks that the events
+ * reach the listeners one at a time and in the order of the game.
+ *
+ * @author Dillon Elste
+ *
+ */
+class AsyncGameTest {
+	private static final int PLAYERS = 3;
+
+	private ExecutorService pool;
+
+	@BeforeEach
+	void setUp() {
+		pool = Executors.newFixedThreadPool(4);
+	}
+
+	@AfterEach
+	void tearDown() {
+		pool.shutdownNow();
+	}
+
+	/**
+	 * Records the events and counts the ones that overlap with another.
+	 */
+	private static class Recorder implements GameListener {
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger overlaps = new AtomicInteger();
+		final List<String> log = new ArrayList<>();
+
+		private void record(String event) {
+			if (running.incrementAndGet() > 1)
+				overlaps.incrementAndGet();
+			log.add(event); // not thread-safe, like the listeners of the baseline
+			Thread.yield();
+			running.decrementAndGet();
+		}
+
+		@Override
+		public void boatRequested(int playerNumber, Grid grid, BlockType type) {
+			record("requested " + playerNumber);
+		}
+
+		@Override
+		public void boatPlaced(int playerNumber, Coordinate from, Coordinate to, BlockType type) {
+			record("placed " + playerNumber);
+		}
+
+		@Override
+		public void boatRejected(int playerNumber, BlockType type, Rejection reason) {
+			record("rejected " + playerNumber);
+		}
+
+		@Override
+		public void gameStarted(GameState gs) {
+			record("started");
+		}
+
+		@Override
+		public void turnStarted(int playerNumber) {
+			record("turn " + playerNumber);
+		}
+	}
+
+	@Test
+	void eventsArriveInOrder() throws Exception {
+		for (long seed = 0; seed < 20; seed++) {
+			AsyncPlayer[] ps = new AsyncPlayer[PLAYERS];
+			for (int i = 0; i < PLAYERS; i++) {
+				ps[i] = AsyncPlayer.of(new PlayerCpu(i, Game.GRID_SIZE, new Random(seed * PLAYERS + i)), pool);
+			}
+			AsyncGame game = new AsyncGame(pool, ps);
+			Recorder r = new Recorder();
+			game.addListener(r);
+
+			int winner = game.play(Game.GRID_SIZE).get(30, TimeUnit.SECONDS);
+			assertTrue(winner >= 0 && winner < PLAYERS);
+			assertEquals(0, r.overlaps.get(), "Events were published concurrently");
+
+			// every player places his whole fleet before the next one starts
+			int boats = 0;
+			for (int i = 0; i < 4; i++) {
+				boats += BlockType.getTypeFromIndex(i).amount;
+			}
+			int player = 0, placed = 0;
+			int started = r.log.indexOf("started");
+			for (String e : r.log.subList(0, started)) {
+				if (e.startsWith("placed ")) {
+					assertEquals("placed " + player, e);
+					if (++placed == boats) {
+						player++;
+						placed = 0;
+					}
+				}
+			}
+			assertEquals(PLAYERS, player);
+			assertEquals("turn 0", r.log.get(started + 1));
+		}
+	}
+}
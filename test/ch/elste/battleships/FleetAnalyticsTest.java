@@ -0,0 +1,168 @@
+package ch.elste.battleships;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ch.elste.battleships.Block.BlockType;
+
+/**
+ * Plays games with known fleets and shots and checks the heatmap, the time to
+ * sink and the opening book of {@link FleetAnalytics}, collected live and from
+ * recorded games.
+ *
+ * @author Dillon Elste
+ *
+ */
+class FleetAnalyticsTest {
+	private static final int N = Game.GRID_SIZE;
+
+	@TempDir
+	Path dir;
+
+	/**
+	 * Plays a game in which player 1 shoots at player 0 until all of his boats are
+	 * sunk, and counts the expected time to sink of each boat type.
+	 */
+	private static GameState play(long seed, FleetAnalytics a, int[][] expectedTimeToSink) {
+		GameStateFactory gsf = new GameStateFactory(new PlayerCpu(0, N, new Random(seed)),
+				new PlayerCpu(1, N, new Random(~seed)));
+		gsf.addListener(a);
+		GameState gs = gsf.getGameState(N);
+		GameState recorded = gs.fork();
+		a.gameStarted(gs);
+
+		Random rng = new Random(seed);
+		int shots = 0;
+		while (!gs.isEliminated(0)) {
+			Coordinate c = gs.randomLegalShot(rng, 1);
+			shots++;
+			if (gs.shoot(c, 1, 0))
+				expectedTimeToSink[gs.getGrid(0).getTypeAt(c).ordinal() - 1][shots]++;
+		}
+		return recorded;
+	}
+
+	@Test
+	void countsFleetsAndTimeToSink() throws IOException {
+		FleetAnalytics live = new FleetAnalytics(N, 0);
+		int[][] timeToSink = new int[4][N * N + 1];
+		int[][][] occupancy = new int[4][N][N];
+		List<GameState> games = new ArrayList<>();
+		for (long seed = 0; seed < 20; seed++) {
+			GameState gs = play(seed, live, timeToSink);
+			games.add(gs);
+			for (int x = 0; x < N; x++) {
+				for (int y = 0; y < N; y++) {
+					BlockType t = gs.getGrid(0).getTypeAt(new Coordinate(x, y));
+					if (t != BlockType.WATER)
+						occupancy[t.ordinal() - 1][x][y]++;
+				}
+			}
+		}
+
+		assertEquals(20, live.getGames());
+		for (int t = 0; t < 4; t++) {
+			BlockType type = BlockType.getTypeFromIndex(t);
+			for (int x = 0; x < N; x++) {
+				for (int y = 0; y < N; y++) {
+					assertEquals(occupancy[t][x][y], live.getOccupancy(type, new Coordinate(x, y)));
+				}
+			}
+			int sunk = 0;
+			for (int s = 0; s <= N * N; s++) {
+				assertEquals(timeToSink[t][s], live.getTimeToSink(type, s));
+				sunk += live.getTimeToSink(type, s);
+			}
+			assertEquals(20 * type.amount, sunk);
+		}
+
+		// the same fleets read from a snapshot file give the same heatmap
+		Path path = dir.resolve("games.bshp");
+		try (SnapshotWriter w = new SnapshotWriter(path, 8)) {
+			for (GameState gs : games) {
+				w.write(new Snapshot(gs, 0, 0));
+			}
+		}
+		FleetAnalytics recorded = new FleetAnalytics(N, 0);
+		assertEquals(20, recorded.addSnapshots(path));
+		assertEquals(20, recorded.getGames());
+		for (BlockType type : BlockType.values()) {
+			if (type == BlockType.WATER)
+				continue;
+			for (int x = 0; x < N; x++) {
+				for (int y = 0; y < N; y++) {
+					Coordinate c = new Coordinate(x, y);
+					assertEquals(live.getOccupancy(type, c), recorded.getOccupancy(type, c));
+				}
+			}
+			assertEquals(0, recorded.getTimeToSink(type, 20));
+		}
+	}
+
+	@Test
+	void openingBookShootsMostOccupiedBlocksFirst() {
+		FleetAnalytics a = new FleetAnalytics(N, 0);
+		GameState gs = play(3, a, new int[4][N * N + 1]);
+		play(3, a, new int[4][N * N + 1]); // the same fleet twice
+		play(4, a, new int[4][N * N + 1]);
+
+		OpeningBook book = a.toOpeningBook(N * N);
+		assertEquals(N * N, book.size());
+		int previous = Integer.MAX_VALUE, previousCell = -1;
+		for (int i = 0; i < book.size(); i++) {
+			int cell = book.get(i);
+			int total = 0;
+			for (int t = 0; t < 4; t++) {
+				total += a.getOccupancy(BlockType.getTypeFromIndex(t), new Coordinate(cell / N, cell % N));
+			}
+			// descending counts, ties by ascending block
+			if (total == previous)
+				assertTrue(cell > previousCell);
+			else
+				assertTrue(total < previous);
+			previous = total;
+			previousCell = cell;
+		}
+
+		// the blocks of the fleet placed twice come first
+		Coordinate first = new Coordinate(book.get(0) / N, book.get(0) % N);
+		assertTrue(gs.getGrid(0).getTypeAt(first) != BlockType.WATER);
+		assertEquals(12, a.toOpeningBook(12).size());
+	}
+
+	@Test
+	void writeAndRead() throws IOException {
+		FleetAnalytics a = new FleetAnalytics(N, 0);
+		play(1, a, new int[4][N * N + 1]);
+		Path path = dir.resolve("fleets.bsfl");
+		a.write(path);
+
+		FleetAnalytics b = FleetAnalytics.read(path, 0);
+		assertEquals(a.getGames(), b.getGames());
+		for (int t = 0; t < 4; t++) {
+			BlockType type = BlockType.getTypeFromIndex(t);
+			for (int i = 0; i < N * N; i++) {
+				Coordinate c = new Coordinate(i / N, i % N);
+				assertEquals(a.getOccupancy(type, c), b.getOccupancy(type, c));
+				assertEquals(a.getTimeToSink(type, i), b.getTimeToSink(type, i));
+			}
+		}
+
+		try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			ch.truncate(ch.size() - 6);
+		}
+		assertThrows(IOException.class, () -> FleetAnalytics.read(path, 0));
+	}
+}
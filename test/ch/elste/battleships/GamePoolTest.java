@@ -0,0 +1,83 @@
+package ch.elste.battleships;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Plays games taken from the {@link GamePool} back to back and checks that
+ * each plays the same fleets and shots as a new game with the same seed.
+ *
+ * @author Dillon Elste
+ *
+ */
+class GamePoolTest {
+
+	/**
+	 * Records the shots fired and the winner of a game.
+	 */
+	private static class Recorder implements GameListener {
+		final List<String> shots = new ArrayList<>();
+		int winner = -1;
+
+		@Override
+		public void shotFired(int playerNumber, int target, Coordinate c) {
+			shots.add(playerNumber + ">" + target + " " + c.getX() + "," + c.getY());
+		}
+
+		@Override
+		public void gameOver(int winner) {
+			this.winner = winner;
+		}
+	}
+
+	private static byte[] fleets(Game g) {
+		Snapshot s = g.snapshot();
+		ByteBuffer buf = ByteBuffer.allocate(s.getRecordSize());
+		s.writeTo(buf);
+		return buf.array();
+	}
+
+	/**
+	 * Runs the initialized game g and returns what was recorded.
+	 */
+	private static Recorder play(Game g) {
+		Recorder r = new Recorder();
+		g.addListener(r);
+		try {
+			g.run();
+		} finally {
+			g.removeListener(r); // pooled games keep their listeners
+		}
+		return r;
+	}
+
+	@Test
+	void pooledGamesPlayLikeNewGames() {
+		// the same seed twice in a row and salvo games in between reuse the grids
+		long[] seeds = { 1, 2, 2, 3, 17, 4, 1 };
+		for (int i = 0; i < 2 * seeds.length; i++) {
+			boolean salvo = i % 3 == 0;
+			long seed = seeds[i % seeds.length];
+
+			Game fresh = Game.cpuVsCpu(salvo, seed);
+			fresh.init();
+			byte[] expectedFleets = fleets(fresh);
+			Recorder expected = play(fresh);
+
+			Game pooled = GamePool.cpuVsCpu(salvo, seed);
+			assertArrayEquals(expectedFleets, fleets(pooled), "Fleets of seed " + seed);
+			Recorder actual = play(pooled);
+
+			assertTrue(expected.shots.size() > 0);
+			assertEquals(expected.shots, actual.shots, "Shots of seed " + seed + ", salvo " + salvo);
+			assertEquals(expected.winner, actual.winner);
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package ch.elste.battleships;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a fork of a {@link GameState} and the GameState it was forked
+ * from don't affect each other, although their grids share the boat layout,
+ * when either of them shoots, fires salvos or is reset.
+ *
+ * @author Dillon Elste
+ *
+ */
+class GameStateForkTest {
+	private static final int N = Game.GRID_SIZE;
+
+	/**
+	 * Everything observable about a grid: the snapshot holds the layout and the
+	 * masks, the rest is derived from them.
+	 */
+	private static class View {
+		final byte[] snapshot;
+		final int legal, hits, remaining;
+		final long hash;
+
+		View(Grid g) {
+			ByteBuffer buf = ByteBuffer.allocate(Grid.getSnapshotSize(g.getGridsize()));
+			g.writeTo(buf);
+			snapshot = buf.array();
+			legal = g.legalShotCount();
+			hits = g.getHitCount();
+			remaining = g.getRemainingBoats();
+			hash = g.getObservedHash();
+		}
+	}
+
+	private static View[] views(GameState gs) {
+		View[] res = new View[gs.getPlayerCount()];
+		for (int i = 0; i < res.length; i++) {
+			res[i] = new View(gs.getGrid(i));
+		}
+		return res;
+	}
+
+	private static void assertUnchanged(View[] expected, GameState gs, Random rng) {
+		for (int i = 0; i < expected.length; i++) {
+			View actual = new View(gs.getGrid(i));
+			assertArrayEquals(expected[i].snapshot, actual.snapshot, "Masks of grid " + i);
+			assertEquals(expected[i].legal, actual.legal);
+			assertEquals(expected[i].hits, actual.hits);
+			assertEquals(expected[i].remaining, actual.remaining);
+			assertEquals(expected[i].hash, actual.hash);
+			GridLegalShotTest.assertLegalSet(gs.getGrid(i), rng);
+		}
+	}
+
+	private static GameStateFactory factory(long seed) {
+		return new GameStateFactory(new PlayerCpu(0, N, new Random(seed)), new PlayerCpu(1, N, new Random(~seed)));
+	}
+
+	/**
+	 * Fires single shots and salvos of 2 to 4 blocks at the opponent of player 0
+	 * until it has no boats left or count shots were fired.
+	 */
+	private static void play(GameState gs, Random rng, int count) {
+		for (int shots = 0; shots < count && !gs.isEliminated(1);) {
+			if (rng.nextBoolean() || gs.legalShotCount(0) < 4) {
+				gs.shoot(gs.randomLegalShot(rng, 0), 0);
+				shots++;
+			} else {
+				int size = 2 + rng.nextInt(3);
+				int[] cells = new int[size];
+				long[] chosen = BitBoard.empty(N);
+				for (int i = 0; i < size; i++) {
+					Coordinate c;
+					do {
+						c = gs.randomLegalShot(rng, 0);
+					} while (BitBoard.get(chosen, c.getX() * N + c.getY()));
+					cells[i] = c.getX() * N + c.getY();
+					BitBoard.set(chosen, cells[i]);
+				}
+				gs.shootAll(cells, 0);
+				shots += size;
+			}
+		}
+	}
+
+	@Test
+	void shootingForkLeavesParentUnchanged() {
+		for (long seed = 0; seed < 20; seed++) {
+			GameState parent = factory(seed).getGameState(N);
+			Random rng = new Random(seed);
+			play(parent, rng, 10);
+			View[] before = views(parent);
+
+			GameState child = parent.fork();
+			play(child, rng, N * N);
+			assertEquals(0, child.getRemainingBoats(1));
+			assertUnchanged(before, parent, rng);
+
+			// a second fork of the unchanged parent starts where the parent is
+			GameState other = parent.fork();
+			assertUnchanged(before, other, rng);
+		}
+	}
+
+	@Test
+	void shootingParentLeavesForkUnchanged() {
+		for (long seed = 0; seed < 20; seed++) {
+			GameState parent = factory(seed).getGameState(N);
+			Random rng = new Random(seed);
+			play(parent, rng, 10);
+
+			GameState child = parent.fork();
+			View[] before = views(child);
+			play(parent, rng, N * N);
+			assertUnchanged(before, child, rng);
+			assertNotEquals(before[1].hash, parent.getObservedHash(0));
+		}
+	}
+
+	@Test
+	void resetWhileLayoutIsShared() {
+		for (long seed = 0; seed < 10; seed++) {
+			GameStateFactory gsf = factory(seed);
+			GameState parent = gsf.getGameState(N);
+			Random rng = new Random(seed);
+			play(parent, rng, 10);
+			View[] before = views(parent);
+
+			// the fork is reset and gets a new fleet
+			GameState child = parent.fork();
+			child.reset();
+			assertUnchanged(before, parent, rng);
+			gsf.reset(child);
+			play(child, rng, 10);
+			assertUnchanged(before, parent, rng);
+
+			// the parent is reset and gets a new fleet
+			child = parent.fork();
+			View[] forked = views(child);
+			parent.reset();
+			assertEquals(N * N, parent.legalShotCount(0));
+			assertEquals(0, parent.getObservedHash(0));
+			gsf.reset(parent);
+			play(parent, rng, 10);
+			assertUnchanged(forked, child, rng);
+			assertUnchanged(before, child, rng);
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package ch.elste.battleships;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Plays the same games on a {@link GameState} and in a {@link GameStore} and
+ * checks that both agree on every shot, the order of the players and the
+ * winner.
+ *
+ * @author Dillon Elste
+ *
+ */
+class GameStoreTest {
+	private static final int PLAYERS = 3;
+
+	private static GameState newGame(long seed) {
+		Player[] ps = new Player[PLAYERS];
+		for (int i = 0; i < PLAYERS; i++) {
+			ps[i] = new PlayerCpu(i, Game.GRID_SIZE, new Random(seed * PLAYERS + i));
+		}
+		return new GameStateFactory(ps).getGameState(Game.GRID_SIZE);
+	}
+
+	@Test
+	void playsLikeGameState() {
+		GameStore store = new GameStore(Game.GRID_SIZE, PLAYERS);
+		for (long seed = 0; seed < 50; seed++) {
+			GameState gs = newGame(seed);
+			int slot = store.allocate(gs);
+			Random rng = new Random(seed);
+
+			int p = 0;
+			while (gs.getWinner() == -1) {
+				int target = gs.getNextPlayer(p);
+				Coordinate c = gs.randomLegalShot(rng, p);
+				int cell = c.getX() * Game.GRID_SIZE + c.getY();
+				assertTrue(store.isShootable(slot, cell, target));
+				assertEquals(gs.shoot(c, p, target), store.shoot(slot, cell, p, target));
+				assertEquals(gs.getWinner(), store.getWinner(slot));
+
+				p = gs.getNextPlayer(p);
+				for (int q = 0; q < PLAYERS; q++) {
+					assertEquals(gs.getNextPlayer(q), store.getNextPlayer(slot, q));
+				}
+			}
+
+			GameState loaded = store.load(slot);
+			assertEquals(gs.getWinner(), loaded.getWinner());
+			for (int q = 0; q < PLAYERS; q++) {
+				assertEquals(gs.isEliminated(q), loaded.isEliminated(q));
+			}
+			store.free(slot);
+		}
+		assertEquals(0, store.size());
+	}
+
+	@Test
+	void eliminatedPlayerCantBeShot() {
+		GameStore store = new GameStore(Game.GRID_SIZE, PLAYERS);
+		GameState gs = newGame(1);
+		int slot = store.allocate(gs);
+
+		// sink every boat of player 1
+		for (int cell = 0; store.getNextPlayer(slot, 0) == 1; cell++) {
+			store.shoot(slot, cell, 0, 1);
+		}
+		assertEquals(2, store.getNextPlayer(slot, 0));
+		assertEquals(-1, store.getWinner(slot));
+		assertThrows(IllegalArgumentException.class, () -> store.shoot(slot, 0, 2, 1));
+
+		// the bit set is restored when a game is stored again
+		store.store(slot, gs);
+		assertEquals(1, store.getNextPlayer(slot, 0));
+	}
+
+	@Test
+	void reusesFreedSlots() {
+		GameStore store = new GameStore(Game.GRID_SIZE, PLAYERS);
+		int a = store.allocate(newGame(1));
+		int b = store.allocate(newGame(2));
+		store.free(a);
+		assertThrows(IllegalStateException.class, () -> store.free(a));
+		assertEquals(a, store.allocate(newGame(3)));
+		assertEquals(2, store.size());
+		assertEquals(-1, store.getWinner(b));
+	}
+
+	@Test
+	void rejectsFreedAndUnknownSlots() {
+		GameStore store = new GameStore(Game.GRID_SIZE, PLAYERS);
+		GameState gs = newGame(4);
+		int a = store.allocate(gs);
+		int b = store.allocate(newGame(5));
+		store.free(a);
+
+		assertThrows(IllegalStateException.class, () -> store.shoot(a, 0, 0, 1));
+		assertThrows(IllegalStateException.class, () -> store.isShootable(a, 0, 1));
+		assertThrows(IllegalStateException.class, () -> store.load(a));
+		assertThrows(IllegalStateException.class, () -> store.store(a, gs));
+		assertThrows(IllegalStateException.class, () -> store.getWinner(a));
+		assertThrows(IndexOutOfBoundsException.class, () -> store.shoot(-1, 0, 0, 1));
+		assertThrows(IndexOutOfBoundsException.class, () -> store.getNextPlayer(1 << 30, 0));
+		// a slot of an existing slab that was never handed out
+		assertThrows(IllegalStateException.class, () -> store.shoot(b + 1, 0, 0, 1));
+
+		store.shoot(b, 0, 0, 1);
+		assertThrows(IllegalArgumentException.class, () -> store.shoot(b, 0, 0, 1));
+	}
+}
@@ -0,0 +1,159 @@
+package ch.elste.battleships;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import ch.elste.battleships.Block.BlockType;
+import ch.elste.battleships.Exceptions.BoatCollisionException;
+import ch.elste.battleships.Exceptions.IllegalBoatSpecException;
+
+/**
+ * Compares the halo check of {@link Grid#canAddBoat(int, int, int, int)} and
+ * {@link Grid#addBoat(Coordinate, Coordinate, BlockType, int)} with a
+ * brute-force reference, which checks every block of a new boat against every
+ * block of the placed boats, on all board sizes up to 20.
+ *
+ * @author Dillon Elste
+ *
+ */
+class GridHaloTest {
+	private static final int MAX_SIZE = 20;
+	private static final int MAX_LENGTH = BlockType.CRUISER.length;
+
+	/**
+	 * Returns all horizontal and vertical boats of length 1 to
+	 * {@link #MAX_LENGTH}, including ones reaching one block over the edge, as
+	 * {x0, y0, x1, y1}.
+	 */
+	private static List<int[]> boats(int n) {
+		List<int[]> res = new ArrayList<>();
+		for (int len = 1; len <= MAX_LENGTH; len++) {
+			for (int x = -1; x <= n; x++) {
+				for (int y = -1; y <= n; y++) {
+					res.add(new int[] { x, y, x, y + len - 1 });
+					if (len > 1)
+						res.add(new int[] { x, y, x + len - 1, y });
+				}
+			}
+		}
+		return res;
+	}
+
+	private static boolean inside(int n, int[] b) {
+		return b[0] >= 0 && b[1] >= 0 && b[2] < n && b[3] < n;
+	}
+
+	/**
+	 * The reference: a boat fits if it is inside the grid and none of its blocks
+	 * is equal or next to a block of another boat.
+	 */
+	private static boolean fits(boolean[][] occupied, int[] b) {
+		int n = occupied.length;
+		if (!inside(n, b))
+			return false;
+
+		for (int x = b[0]; x <= b[2]; x++) {
+			for (int y = b[1]; y <= b[3]; y++) {
+				for (int ox = 0; ox < n; ox++) {
+					for (int oy = 0; oy < n; oy++) {
+						if (occupied[ox][oy] && Math.abs(ox - x) <= 1 && Math.abs(oy - y) <= 1)
+							return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	private static void occupy(boolean[][] occupied, int[] b) {
+		for (int x = b[0]; x <= b[2]; x++) {
+			for (int y = b[1]; y <= b[3]; y++) {
+				occupied[x][y] = true;
+			}
+		}
+	}
+
+	private static boolean add(Grid g, int[] b) {
+		try {
+			g.addBoat(new Coordinate(b[0], b[1]), new Coordinate(b[2], b[3]), BlockType.PATROL_BOAT, 1);
+			return true;
+		} catch (BoatCollisionException | IllegalBoatSpecException e) {
+			return false;
+		}
+	}
+
+	@Test
+	void everyPairOfBoats() {
+		for (int n = 1; n <= MAX_SIZE; n++) {
+			List<int[]> boats = boats(n);
+			for (int[] first : boats) {
+				if (!inside(n, first))
+					continue;
+
+				Grid g = new Grid(n);
+				if (!add(g, first))
+					fail("Boat doesn't fit on an empty grid");
+
+				// the blocks next to the first boat, found by comparing all blocks
+				boolean[][] occupied = new boolean[n][n];
+				occupy(occupied, first);
+				boolean[][] near = new boolean[n][n];
+				for (int x = 0; x < n; x++) {
+					for (int y = 0; y < n; y++) {
+						near[x][y] = !fits(occupied, new int[] { x, y, x, y });
+					}
+				}
+
+				for (int[] second : boats) {
+					boolean expected = inside(n, second);
+					for (int x = second[0]; expected && x <= second[2]; x++) {
+						for (int y = second[1]; expected && y <= second[3]; y++) {
+							expected = !near[x][y];
+						}
+					}
+					if (g.canAddBoat(second[0], second[1], second[2], second[3]) != expected)
+						fail(String.format("n=%d, boat %s next to %s", n, str(second), str(first)));
+				}
+			}
+		}
+	}
+
+	@Test
+	void randomFleets() {
+		Random rng = new Random(38);
+		for (int n = 1; n <= MAX_SIZE; n++) {
+			List<int[]> boats = boats(n);
+			for (int fleet = 0; fleet < 500; fleet++) {
+				Grid g = new Grid(n);
+				boolean[][] occupied = new boolean[n][n];
+				for (int i = 0; i < 15; i++) {
+					int[] b = boats.get(rng.nextInt(boats.size()));
+					boolean expected = fits(occupied, b);
+					assertEquals(expected, add(g, b), "boat " + str(b) + " on a grid of size " + n);
+					if (expected)
+						occupy(occupied, b);
+				}
+			}
+		}
+	}
+
+	@Test
+	void boatOutsideGridIsIllegal() {
+		Grid g = new Grid(10);
+		assertThrows(IllegalBoatSpecException.class,
+				() -> g.addBoat(new Coordinate('Z', 0), new Coordinate('Z', 5), BlockType.CRUISER, 0));
+		assertThrows(IllegalBoatSpecException.class,
+				() -> g.addBoat(new Coordinate(0, 7), new Coordinate(0, 12), BlockType.CRUISER, 0));
+	}
+
+	private static String str(int[] b) {
+		return String.format("(%d, %d)-(%d, %d)", b[0], b[1], b[2], b[3]);
+	}
+}
@@ -0,0 +1,112 @@
+package ch.elste.battleships;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import ch.elste.battleships.Exceptions.IllegalBoatSpecException;
+
+/**
+ * Checks the dense set of legal shots of {@link Grid}, i.e.
+ * {@link Grid#legalShotCount()} and {@link Grid#randomLegalShot(Random)},
+ * against the blocks that were actually shot, over random games of single
+ * shots and salvos.
+ *
+ * @author Dillon Elste
+ *
+ */
+class GridLegalShotTest {
+
+	static Grid randomGrid(int gridsize, long seed) {
+		return new GameStateFactory(new PlayerCpu(0, gridsize, new Random(seed)),
+				new PlayerCpu(1, gridsize, new Random(~seed))).getGameState(gridsize).getGrid(0);
+	}
+
+	private static boolean isShootable(Grid g, int cell) {
+		try {
+			return g.isShootable(new Coordinate(cell / g.getGridsize(), cell % g.getGridsize()));
+		} catch (IllegalBoatSpecException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	static void assertLegalSet(Grid g, Random rng) {
+		int n = g.getGridsize();
+		int unshot = 0;
+		for (int cell = 0; cell < n * n; cell++) {
+			if (isShootable(g, cell))
+				unshot++;
+		}
+		assertEquals(unshot, g.legalShotCount());
+
+		if (unshot > 0) {
+			for (int i = 0; i < 20; i++) {
+				Coordinate c = g.randomLegalShot(rng);
+				assertTrue(isShootable(g, c.getX() * n + c.getY()), "Shot block chosen: " + c);
+			}
+		} else {
+			assertThrows(IllegalStateException.class, () -> g.randomLegalShot(rng));
+		}
+	}
+
+	@Test
+	void legalShotsMatchShotMask() {
+		for (int gridsize : new int[] { 10, 12, 15 }) {
+			for (long seed = 0; seed < 30; seed++) {
+				Grid g = randomGrid(gridsize, seed);
+				Random rng = new Random(seed);
+				assertLegalSet(g, rng);
+
+				while (g.legalShotCount() > 0) {
+					if (rng.nextBoolean()) {
+						g.shoot(g.randomLegalShot(rng));
+					} else {
+						// a salvo of distinct legal blocks
+						int size = 1 + rng.nextInt(Math.min(5, g.legalShotCount()));
+						int[] cells = new int[size];
+						long[] chosen = BitBoard.empty(gridsize);
+						for (int i = 0; i < size; i++) {
+							Coordinate c;
+							do {
+								c = g.randomLegalShot(rng);
+							} while (BitBoard.get(chosen, c.getX() * gridsize + c.getY()));
+							cells[i] = c.getX() * gridsize + c.getY();
+							BitBoard.set(chosen, cells[i]);
+						}
+						g.shootAll(cells);
+					}
+					assertLegalSet(g, rng);
+				}
+			}
+		}
+	}
+
+	@Test
+	void shootingTwiceChangesNothing() {
+		Grid g = randomGrid(10, 5);
+		Random rng = new Random(5);
+		Coordinate c = g.randomLegalShot(rng);
+		g.shoot(c);
+		int cell = c.getX() * 10 + c.getY();
+
+		int legal = g.legalShotCount();
+		int hits = g.getHitCount();
+		long hash = g.getObservedHash();
+		assertThrows(IllegalArgumentException.class, () -> g.shoot(c));
+
+		// the salvo is rejected as a whole, also its first, unshot block
+		Coordinate other = g.randomLegalShot(rng);
+		int[] salvo = { other.getX() * 10 + other.getY(), cell };
+		assertThrows(IllegalArgumentException.class, () -> g.shootAll(salvo));
+
+		assertEquals(legal, g.legalShotCount());
+		assertEquals(hits, g.getHitCount());
+		assertEquals(hash, g.getObservedHash());
+		assertTrue(isShootable(g, salvo[0]));
+		assertLegalSet(g, rng);
+	}
+}
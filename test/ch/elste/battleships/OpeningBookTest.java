@@ -0,0 +1,78 @@
+package ch.elste.battleships;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks loading opening books and how {@link PlayerCpu} plays them.
+ *
+ * @author Dillon Elste
+ *
+ */
+class OpeningBookTest {
+	@TempDir
+	Path dir;
+
+	private Path write(OpeningBook book) throws IOException {
+		Path path = dir.resolve("book.bsob");
+		book.write(path);
+		return path;
+	}
+
+	@Test
+	void loadsWrittenBook() throws IOException {
+		OpeningBook book = OpeningBook.generate(10, 12, new Random(1));
+		OpeningBook loaded = OpeningBook.load(write(book));
+		assertEquals(10, loaded.getGridsize());
+		assertEquals(12, loaded.size());
+		for (int i = 0; i < 12; i++) {
+			assertEquals(book.get(i), loaded.get(i));
+		}
+	}
+
+	@Test
+	void rejectsWrongLength() throws IOException {
+		Path path = write(OpeningBook.fromOrder(10, new int[] { 1, 2, 3 }, 3));
+		try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			ch.truncate(ch.size() - 1);
+		}
+		assertThrows(IOException.class, () -> OpeningBook.load(path));
+
+		try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			ch.write(ByteBuffer.allocate(3), ch.size()); // trailing garbage
+		}
+		assertThrows(IOException.class, () -> OpeningBook.load(path));
+	}
+
+	@Test
+	void rejectsShotsOutsideGrid() throws IOException {
+		Path path = write(OpeningBook.fromOrder(10, new int[] { 1, 100 }, 2));
+		assertThrows(IOException.class, () -> OpeningBook.load(path));
+
+		Path negative = write(OpeningBook.fromOrder(10, new int[] { -1 }, 1));
+		assertThrows(IOException.class, () -> OpeningBook.load(negative));
+	}
+
+	@Test
+	void skipsBookShotsAlreadyTaken() {
+		PlayerCpu p = new PlayerCpu(0, 10, new Random(1));
+		GameState gs = new GameStateFactory(p, new PlayerCpu(1, 10, new Random(2))).getGameState(10);
+		gs.shoot(new Coordinate(0, 1), 0);
+		gs.shoot(new Coordinate(0, 3), 0);
+
+		p.setOpeningBook(OpeningBook.fromOrder(10, new int[] { 1, 2, 3, 4 }, 4));
+		p.setGameState(gs);
+		assertEquals(2, p.getNextShot().getY());
+		assertEquals(4, p.getNextShot().getY());
+	}
+}
@@ -0,0 +1,71 @@
+package ch.elste.battleships;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the bit-sliced scores of {@link PlacementScorer} against the scalar
+ * version on random boards of many grid sizes, including the ones where rows
+ * and words line up differently.
+ *
+ * @author Dillon Elste
+ *
+ */
+class PlacementScorerTest {
+
+	private static long[] randomBoard(int gridsize, double density, Random rng) {
+		long[] res = BitBoard.empty(gridsize);
+		for (int c = 0; c < gridsize * gridsize; c++) {
+			if (rng.nextDouble() < density)
+				BitBoard.set(res, c);
+		}
+		return res;
+	}
+
+	private static void assertSameScores(long[] blocked, int gridsize, int[] boatsPerLength) {
+		assertArrayEquals(PlacementScorer.scoreScalar(blocked, gridsize, boatsPerLength),
+				PlacementScorer.score(blocked, gridsize, boatsPerLength),
+				() -> "Scores differ on a " + gridsize + "x" + gridsize + " board");
+	}
+
+	@Test
+	void fleetOnRandomBoards() {
+		Random rng = new Random(41);
+		int[] fleet = PlacementScorer.fleet();
+		for (int gridsize = 1; gridsize <= 100; gridsize++) {
+			for (double density : new double[] { 0, 0.1, 1.0 / 3, 0.7, 1 }) {
+				assertSameScores(randomBoard(gridsize, density, rng), gridsize, fleet);
+			}
+		}
+	}
+
+	@Test
+	void randomFleetsOnRandomBoards() {
+		Random rng = new Random(42);
+		for (int i = 0; i < 500; i++) {
+			int gridsize = 1 + rng.nextInt(80);
+			// boats longer than the grid and heavy weights need more bit planes
+			int[] boatsPerLength = new int[1 + rng.nextInt(12)];
+			for (int l = 1; l < boatsPerLength.length; l++) {
+				boatsPerLength[l] = rng.nextInt(4) == 0 ? 0 : rng.nextInt(rng.nextBoolean() ? 5 : 1000);
+			}
+			assertSameScores(randomBoard(gridsize, rng.nextDouble(), rng), gridsize, boatsPerLength);
+		}
+	}
+
+	@Test
+	void gridsDuringGames() {
+		for (long seed = 0; seed < 10; seed++) {
+			Grid g = GridLegalShotTest.randomGrid(Game.GRID_SIZE, seed);
+			Random rng = new Random(seed);
+			while (g.getRemainingBoats() > 0) {
+				assertArrayEquals(PlacementScorer.scoreScalar(g.getObservedBlocked(), g.getGridsize(),
+						g.getRemainingBoatsPerLength()), PlacementScorer.score(g));
+				g.shoot(g.randomLegalShot(rng));
+			}
+		}
+	}
+}
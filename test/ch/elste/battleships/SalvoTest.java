@@ -0,0 +1,111 @@
+package ch.elste.battleships;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import ch.elste.battleships.Block.BlockType;
+
+/**
+ * Fires salvos with {@link Grid#shootAll(int[])} and the same blocks one by
+ * one with {@link Grid#shoot(Coordinate)} at forks of the same grid, and checks
+ * that the {@link SalvoResult} and the grids agree.
+ *
+ * @author Dillon Elste
+ *
+ */
+class SalvoTest {
+
+	private static byte[] snapshot(Grid g) {
+		ByteBuffer buf = ByteBuffer.allocate(Grid.getSnapshotSize(g.getGridsize()));
+		g.writeTo(buf);
+		return buf.array();
+	}
+
+	/**
+	 * Picks a salvo of distinct unshot blocks. About half of the salvos also hold
+	 * the unshot blocks of up to three boats, so that salvos sink boats, sometimes
+	 * several at once.
+	 */
+	private static int[] salvo(Grid g, Random rng) {
+		int n = g.getGridsize();
+		long[] chosen = BitBoard.empty(n);
+		if (rng.nextBoolean()) {
+			for (int i = 0; i < 3; i++) {
+				Coordinate c = g.randomLegalShot(rng);
+				for (Coordinate b : g.getBoatAt(c)) {
+					BitBoard.set(chosen, b.getX() * n + b.getY());
+				}
+			}
+			chosen = g.filterShootable(chosen);
+		}
+		int boats = BitBoard.count(chosen);
+		int size = Math.max(1, boats + rng.nextInt(Math.min(4, g.legalShotCount() - boats) + 1));
+		while (BitBoard.count(chosen) < size) {
+			Coordinate c = g.randomLegalShot(rng);
+			BitBoard.set(chosen, c.getX() * n + c.getY());
+		}
+
+		List<Integer> cells = new ArrayList<>();
+		for (int i = 0; i < n * n; i++) {
+			if (BitBoard.get(chosen, i))
+				cells.add(i);
+		}
+		Collections.shuffle(cells, rng);
+		return cells.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	@Test
+	void salvoMatchesSingleShots() {
+		int sinkingSalvos = 0;
+		for (int gridsize : new int[] { 10, 12, 15 }) {
+			for (long seed = 0; seed < 30; seed++) {
+				Grid g = GridLegalShotTest.randomGrid(gridsize, seed);
+				Random rng = new Random(seed);
+				while (g.legalShotCount() > 0) {
+					int[] cells = salvo(g, rng);
+					Grid single = g.fork();
+					SalvoResult res = g.shootAll(cells);
+
+					long[] hits = BitBoard.empty(gridsize), sunk = BitBoard.empty(gridsize);
+					for (int cell : cells) {
+						Coordinate c = new Coordinate(cell / gridsize, cell % gridsize);
+						if (single.getTypeAt(c) != BlockType.WATER)
+							BitBoard.set(hits, cell);
+						if (single.shoot(c)) {
+							for (Coordinate b : single.getBoatAt(c)) {
+								BitBoard.set(sunk, b.getX() * gridsize + b.getY());
+							}
+						}
+					}
+
+					assertArrayEquals(hits, res.getHits());
+					assertArrayEquals(sunk, res.getSunk());
+					assertEquals(BitBoard.count(hits), res.getHitCount());
+					for (int cell : cells) {
+						assertEquals(BitBoard.get(hits, cell), res.isHit(cell));
+						assertEquals(BitBoard.get(sunk, cell), res.isSunk(cell));
+					}
+					if (BitBoard.count(sunk) > 0)
+						sinkingSalvos++;
+
+					assertEquals(single.getHitCount(), g.getHitCount());
+					assertEquals(single.getRemainingBoats(), g.getRemainingBoats());
+					assertEquals(single.legalShotCount(), g.legalShotCount());
+					assertEquals(single.getObservedHash(), g.getObservedHash());
+					assertArrayEquals(snapshot(single), snapshot(g));
+				}
+				assertEquals(0, g.getRemainingBoats());
+			}
+		}
+		assertTrue(sinkingSalvos > 90 * Grid.BOAT_COUNT / 2, "Too few salvos sank boats: " + sinkingSalvos);
+	}
+}
@@ -0,0 +1,128 @@
+package ch.elste.battleships;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks reading damaged snapshot files and resuming snapshots.
+ *
+ * @author Dillon Elste
+ *
+ */
+class SnapshotTest {
+	@TempDir
+	Path dir;
+
+	private static Snapshot snapshot(long seed, int shots) {
+		GameState gs = new GameStateFactory(new PlayerCpu(0, Game.GRID_SIZE, new Random(seed)),
+				new PlayerCpu(1, Game.GRID_SIZE, new Random(~seed))).getGameState(Game.GRID_SIZE);
+		Random rng = new Random(seed);
+		for (int i = 0; i < shots; i++) {
+			gs.shoot(gs.randomLegalShot(rng, i % 2), i % 2);
+		}
+		return new Snapshot(gs, shots % 2, seed);
+	}
+
+	private Path write(int games) throws IOException {
+		Path path = dir.resolve("games.bshp");
+		try (SnapshotWriter w = new SnapshotWriter(path, 1)) {
+			for (int i = 0; i < games; i++) {
+				w.write(snapshot(i, 10 * i));
+			}
+		}
+		return path;
+	}
+
+	@Test
+	void readsAllRecords() throws IOException {
+		List<Snapshot> res = Snapshot.readAll(write(3));
+		assertEquals(3, res.size());
+		for (int i = 0; i < 3; i++) {
+			assertEquals(i, res.get(i).getSeed());
+			assertEquals(Game.GRID_SIZE * Game.GRID_SIZE - 5 * i,
+					res.get(i).getGameState().legalShotCount(i % 2 == 0 ? 0 : 1));
+		}
+	}
+
+	@Test
+	void skipsTruncatedTail() throws IOException {
+		Path path = write(3);
+		try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			ch.truncate(ch.size() - 10);
+		}
+		assertEquals(2, Snapshot.readAll(path).size());
+
+		try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			// only the length of the second record is left
+			ch.truncate(Snapshot.HEADER_SIZE + snapshot(0, 0).getRecordSize() + 4);
+		}
+		assertEquals(1, Snapshot.readAll(path).size());
+	}
+
+	@Test
+	void corruptRecordThrowsIOException() throws IOException {
+		Path path = write(2);
+		try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			// the second record claims to be shorter than its grids
+			int second = Snapshot.HEADER_SIZE + snapshot(0, 0).getRecordSize();
+			ch.write(ByteBuffer.allocate(4).putInt(0, 20), second);
+		}
+		assertThrows(IOException.class, () -> Snapshot.readAll(path));
+	}
+
+	/**
+	 * Overwrites bytes of the first grid of a single record and checks that the
+	 * record is rejected.
+	 */
+	private void assertCorruptGrid(int offset, ByteBuffer bytes) throws IOException {
+		Path path = write(1);
+		// record length, turn, seed and number of players come before the grid
+		int grid = Snapshot.HEADER_SIZE + 4 + 1 + 8 + 1;
+		try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			ch.write(bytes, grid + offset);
+		}
+		assertThrows(IOException.class, () -> Snapshot.readAll(path));
+	}
+
+	@Test
+	void corruptGridThrowsIOException() throws IOException {
+		int n = Game.GRID_SIZE;
+		// grid size, sunk boats, block types, then the shot mask
+		assertCorruptGrid(3 + n + 4, ByteBuffer.wrap(new byte[] { 9 }));
+		assertCorruptGrid(3 + n + 4, ByteBuffer.wrap(new byte[] { -1 }));
+		assertCorruptGrid(2, ByteBuffer.wrap(new byte[] { 1 }));
+		int words = BitBoard.words(n);
+		ByteBuffer beyond = ByteBuffer.allocate(8).putLong(0, 1L << (n * n - 64 * (words - 1)));
+		assertCorruptGrid(3 + n * n + 8 * (words - 1), beyond);
+		// a sunk block without a sunk boat
+		assertCorruptGrid(3 + n * n + 2 * 8 * words, ByteBuffer.allocate(8).putLong(0, 1L));
+		assertCorruptGrid(0, ByteBuffer.allocate(2).putShort(0, (short) 0));
+	}
+
+	@Test
+	void resumeLeavesSnapshotUnchanged() {
+		Snapshot s = snapshot(7, 20);
+		int before = s.getGameState().legalShotCount(0);
+
+		for (int i = 0; i < 2; i++) {
+			Game g = Game.cpuVsCpu(false, 7);
+			g.resume(s);
+			g.run();
+		}
+		assertEquals(before, s.getGameState().legalShotCount(0));
+		assertEquals(-1, s.getGameState().getWinner());
+		assertNotEquals(0, s.getGameState().getPlayersLeft());
+	}
+}
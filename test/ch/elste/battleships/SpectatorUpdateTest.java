@@ -0,0 +1,80 @@
+package ch.elste.battleships;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Encodes and decodes the updates a {@link SpectatorChannel} sends, including a
+ * keyframe with more blocks than fit in a short.
+ *
+ * @author Dillon Elste
+ *
+ */
+class SpectatorUpdateTest {
+
+	private static void assertRoundTrip(SpectatorUpdate u) {
+		ByteBuffer buf = u.getEncoded();
+		SpectatorUpdate d = SpectatorUpdate.decode(buf);
+		assertEquals(0, buf.remaining());
+		assertEquals(u.isKeyframe(), d.isKeyframe());
+		assertEquals(u.getSequence(), d.getSequence());
+		assertEquals(u.getPlayer(), d.getPlayer());
+		assertEquals(u.getSize(), d.getSize());
+		for (int i = 0; i < u.getSize(); i++) {
+			assertEquals(u.getCell(i), d.getCell(i));
+			assertEquals(u.getSymbol(i), d.getSymbol(i));
+		}
+	}
+
+	@Test
+	void largeGameRoundTrip() {
+		int players = GameState.MAX_PLAYERS, gridsize = 23;
+		Player[] ps = new Player[players];
+		for (int i = 0; i < players; i++) {
+			ps[i] = new PlayerCpu(i, gridsize, new Random(i));
+		}
+		GameState gs = new GameStateFactory(ps).getGameState(gridsize);
+
+		SpectatorChannel channel = new SpectatorChannel(5);
+		List<SpectatorUpdate> updates = new ArrayList<>();
+		channel.subscribe(updates::add);
+		gs.addListener(channel);
+		channel.gameStarted(gs);
+
+		Random rng = new Random(33);
+		for (int i = 0; i < 12; i++) {
+			int p = i % players;
+			gs.shoot(gs.randomLegalShot(rng, p), p);
+		}
+
+		SpectatorUpdate keyframe = updates.get(0);
+		assertTrue(keyframe.isKeyframe());
+		assertEquals(players * gridsize * gridsize, keyframe.getSize());
+		assertTrue(keyframe.getSize() > Short.MAX_VALUE);
+		assertTrue(updates.size() > 12);
+		for (SpectatorUpdate u : updates) {
+			assertRoundTrip(u);
+		}
+	}
+
+	@Test
+	void rejectsCorruptUpdate() {
+		SpectatorUpdate u = new SpectatorUpdate(SpectatorUpdate.DELTA, 7, 1, new int[] { 3, 4 },
+				new char[] { 'X', 'O' });
+		ByteBuffer buf = u.getEncoded();
+		ByteBuffer truncated = buf.duplicate().limit(buf.limit() - 1);
+		assertThrows(IllegalArgumentException.class, () -> SpectatorUpdate.decode(truncated));
+
+		ByteBuffer copy = ByteBuffer.allocate(buf.remaining()).put(buf.duplicate()).flip();
+		copy.put(0, (byte) 9); // unknown kind
+		assertThrows(IllegalArgumentException.class, () -> SpectatorUpdate.decode(copy));
+	}
+}
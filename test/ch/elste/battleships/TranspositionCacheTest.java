@@ -0,0 +1,126 @@
+package ch.elste.battleships;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that {@link TranspositionCache} stays within its capacity and never
+ * returns a wrong result, also when many threads use it and when evictions move
+ * entries across the end of a stripe's table.
+ *
+ * @author Dillon Elste
+ *
+ */
+class TranspositionCacheTest {
+
+	/**
+	 * The result every test caches for a hash.
+	 */
+	private static String result(long hash) {
+		return Long.toHexString(hash);
+	}
+
+	/**
+	 * Checks that every hash is either missing or mapped to its result and that
+	 * the cache holds no entries that can't be found.
+	 */
+	private static void assertConsistent(TranspositionCache<String> cache, List<Long> hashes) {
+		int found = 0;
+		for (long h : hashes) {
+			String r = cache.get(h);
+			if (r != null) {
+				assertEquals(result(h), r);
+				found++;
+			}
+		}
+		assertEquals(cache.size(), found, "Entries that can't be found anymore");
+	}
+
+	@Test
+	void concurrentComputeIfAbsent() throws Exception {
+		TranspositionCache<String> cache = new TranspositionCache<>(1 << 10, 8);
+		AtomicInteger computed = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<?>> fs = new ArrayList<>();
+			for (int t = 0; t < 8; t++) {
+				long seed = t;
+				fs.add(pool.submit(() -> {
+					Random rng = new Random(seed);
+					for (int i = 0; i < 200_000; i++) {
+						// more hashes than fit, so the threads also evict each other's entries
+						long h = rng.nextInt(1 << 11) * 0x9E3779B97F4A7C15L;
+						String r = cache.computeIfAbsent(h, x -> {
+							computed.incrementAndGet();
+							return result(x);
+						});
+						assertEquals(result(h), r);
+					}
+				}));
+			}
+			for (Future<?> f : fs) {
+				f.get(60, TimeUnit.SECONDS);
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+
+		assertTrue(cache.size() <= 1 << 10);
+		assertTrue(computed.get() < 8 * 200_000, "Nothing was taken from the cache");
+		List<Long> hashes = new ArrayList<>();
+		for (int i = 0; i < 1 << 11; i++) {
+			hashes.add(i * 0x9E3779B97F4A7C15L);
+		}
+		assertConsistent(cache, hashes);
+	}
+
+	@Test
+	void staysWithinCapacity() {
+		for (int capacity : new int[] { 1, 2, 7, 64, 1000 }) {
+			for (int stripes : new int[] { 1, 3, 16 }) {
+				TranspositionCache<String> cache = new TranspositionCache<>(capacity, stripes);
+				Random rng = new Random(capacity * 31 + stripes);
+				for (int i = 0; i < 10 * capacity + 100; i++) {
+					long h = rng.nextLong();
+					cache.put(h, result(h));
+					assertEquals(result(h), cache.get(h));
+					assertTrue(cache.size() <= capacity, "More entries than the capacity");
+				}
+			}
+		}
+	}
+
+	@Test
+	void findsEntriesAfterEvictionsWrapAround() {
+		// one stripe of capacity 8 has 16 slots; all hashes belong to the last
+		// slots or the first one, so their probe sequences wrap around the table
+		int[] homes = { 13, 14, 15, 0 };
+		Random rng = new Random(43);
+		for (int run = 0; run < 200; run++) {
+			TranspositionCache<String> cache = new TranspositionCache<>(8, 1);
+			List<Long> hashes = new ArrayList<>();
+			for (int i = 0; i < 64; i++) {
+				long h = ((long) rng.nextInt(1 << 20) << 4) | homes[rng.nextInt(homes.length)];
+				hashes.add(h);
+				if (rng.nextInt(4) == 0)
+					cache.get(hashes.get(rng.nextInt(hashes.size()))); // set some reference bits
+				cache.put(h, result(h));
+
+				assertEquals(result(h), cache.get(h));
+				assertTrue(cache.size() <= 8);
+				assertConsistent(cache, hashes);
+			}
+		}
+	}
+}
@@ -0,0 +1,183 @@
+package ch.elste.battleships;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import ch.elste.battleships.Block.BlockType;
+import ch.elste.battleships.Exceptions.IllegalBoatSpecException;
+import ch.elste.battleships.TurnScheduler.FallbackPolicy;
+
+/**
+ * Checks that the deadline of {@link TurnScheduler} ends the moves of players
+ * that don't answer, and that such a player can make the following moves.
+ *
+ * @author Dillon Elste
+ *
+ */
+class TurnSchedulerTest {
+	private static final Duration DEADLINE = Duration.ofMillis(100);
+
+	private GameState gs;
+	private GameEvents events;
+	private TurnScheduler scheduler;
+	private int replaced;
+
+	@BeforeEach
+	void setUp() {
+		gs = new GameStateFactory(new PlayerCpu(0, Game.GRID_SIZE, new Random(1)),
+				new PlayerCpu(1, Game.GRID_SIZE, new Random(2))).getGameState(Game.GRID_SIZE);
+		events = new GameEvents();
+		events.add(new GameListener() {
+			@Override
+			public void shotReplaced(int playerNumber, Coordinate c) {
+				replaced++;
+			}
+		});
+		scheduler = new TurnScheduler(DEADLINE, 3, FallbackPolicy.randomLegal(new Random(3)));
+	}
+
+	@Test
+	void remotePlayerMovesAgainAfterTimeout() throws Exception {
+		RemotePlayer p = new RemotePlayer(0);
+
+		Coordinate first = scheduler.nextShot(p, gs, events, Runnable::run).get(5, TimeUnit.SECONDS);
+		assertEquals(1, replaced);
+		assertLegal(first);
+
+		// the second move is requested before the player answers
+		CompletableFuture<Coordinate> second = scheduler.nextShot(p, gs, events, Runnable::run);
+		send(p, "B3");
+		assertAt(1, 3, second.get(5, TimeUnit.SECONDS));
+
+		// a line arriving after a timeout is kept for the next move
+		scheduler.nextShot(p, gs, events, Runnable::run).get(5, TimeUnit.SECONDS);
+		assertEquals(2, replaced);
+		send(p, "C4");
+		assertAt(2, 4, scheduler.nextShot(p, gs, events, Runnable::run).get(5, TimeUnit.SECONDS));
+		assertEquals(2, replaced);
+	}
+
+	@Test
+	void hungPlayerIsReplaced() {
+		CountDownLatch never = new CountDownLatch(1);
+		Player hung = new Player() {
+			@Override
+			public Coordinate[] getBoat(BlockType type) {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public int getPlayerNumber() {
+				return 0;
+			}
+
+			@Override
+			public Coordinate getNextShot() {
+				try {
+					never.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return null;
+			}
+		};
+
+		Coordinate shot = assertTimeoutPreemptively(Duration.ofSeconds(5),
+				() -> scheduler.nextShot(hung, gs, events, null));
+		assertEquals(1, replaced);
+		assertLegal(shot);
+		never.countDown();
+	}
+
+	@Test
+	void latePlayerIsNotCalledAgain() throws Exception {
+		CountDownLatch answer = new CountDownLatch(1);
+		AtomicInteger calls = new AtomicInteger();
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger overlaps = new AtomicInteger();
+		Player slow = new Player() {
+			@Override
+			public Coordinate[] getBoat(BlockType type) {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public int getPlayerNumber() {
+				return 0;
+			}
+
+			@Override
+			public Coordinate getNextShot() {
+				if (running.incrementAndGet() > 1)
+					overlaps.incrementAndGet();
+				try {
+					if (calls.incrementAndGet() == 1)
+						answer.await(); // only the first call is late
+					return new Coordinate(4, calls.get());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return null;
+				} finally {
+					running.decrementAndGet();
+				}
+			}
+		};
+
+		// the first call misses the deadline of two moves
+		assertLegal(scheduler.nextShot(slow, gs, events, null));
+		assertLegal(scheduler.nextShot(slow, gs, events, null));
+		assertEquals(2, replaced);
+		assertEquals(1, calls.get());
+
+		// the late answer is taken by the next move
+		answer.countDown();
+		assertAt(4, 1, scheduler.nextShot(slow, gs, events, null));
+		assertEquals(1, calls.get());
+
+		assertAt(4, 2, scheduler.nextShot(slow, gs, events, null));
+		assertEquals(2, calls.get());
+		assertEquals(2, replaced);
+		assertEquals(0, overlaps.get());
+	}
+
+	@Test
+	void syncPlayerWithinDeadline() {
+		Player p = new PlayerCpu(0, Game.GRID_SIZE, new Random(4));
+		for (int i = 0; i < 10; i++) {
+			assertLegal(scheduler.nextShot(p, gs, events, null));
+		}
+		assertEquals(0, replaced);
+	}
+
+	private void assertLegal(Coordinate c) {
+		assertNotNull(c);
+		try {
+			assertTrue(gs.isValid(c, 0));
+		} catch (IllegalBoatSpecException e) {
+			throw new AssertionError(c + " is outside the grid", e);
+		}
+	}
+
+	private static void assertAt(int x, int y, Coordinate c) {
+		assertEquals(x, c.getX());
+		assertEquals(y, c.getY());
+	}
+
+	private static void send(RemotePlayer p, String line) {
+		byte[] b = line.getBytes(StandardCharsets.US_ASCII);
+		p.line(b, b.length);
+	}
+}